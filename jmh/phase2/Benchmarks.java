@@ -0,0 +1,223 @@
+package phase2;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// microbenchmarks for the parts of the machine every change to it should be
+// measured on, built and run with
+//   mvn -Pjmh package && java -jar target/benchmarks.jar [regexp]
+// every benchmark runs in forked jvms with the machine's tracing off, so the
+// jit of one benchmark does not leak into the next, a regexp on the command
+// line runs only the benchmarks it matches, e.g. Benchmarks.allocate
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dos.trace=OFF")
+public class Benchmarks {
+    // a job looping on CR/BT until it runs out of time, TTL is 9999 instructions
+    static String cpuJob(int jid) {
+        return String.format("$AMJ%04d99990001%nGD20LR20CR20BT01%n$DTA%nLOOP%n$END%04d%n", jid, jid);
+    }
+
+    // a job doing GD/PD on five pages
+    static String ioJob(int jid) {
+        return String.format("$AMJ%04d00200005%nGD10PD10GD20PD20GD30PD30GD40PD40GD50PD50%nH%n$DTA%n"
+                + "ONE%nTWO%nTHREE%nFOUR%nFIVE%n$END%04d%n", jid, jid);
+    }
+
+    // a deck of the given number of jobs, alternating between cpu and io jobs
+    static String deck(int jobs) {
+        StringBuilder deck = new StringBuilder();
+        for (int i = 0; i < jobs; i++) {
+            deck.append(i % 2 == 0 ? cpuJob(i % 10000) : ioJob(i % 10000));
+        }
+        return deck.toString();
+    }
+
+    static VirtualMachine machine(String cards) {
+        ByteBuffer bytes = ByteBuffer.wrap(cards.getBytes(StandardCharsets.ISO_8859_1));
+        return new VirtualMachine(new MappedCardReader(bytes, 0, 0), new BufferedWriter(Writer.nullWriter()),
+                new FrameAllocator(30, null));
+    }
+
+    static Path write(String deck) throws IOException {
+        Path file = Files.createTempFile("deck", ".txt");
+        Files.write(file, deck.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    static void runBatch(Path deck, String executor) throws IOException {
+        try (FileChannel channel = FileChannel.open(deck, StandardOpenOption.READ);
+                OutputSpooler spooler = new OutputSpooler(Writer.nullWriter(), "deck")) {
+            OSProjectPhase2.runBatch(new MappedCardReader(channel), 0, spooler, executor, OSProjectPhase2.THREADS);
+        }
+    }
+
+    // the fetch-execute loop, a whole cpu job of 9999 instructions a call,
+    // from loading its card to halting on the time limit
+    @Benchmark
+    @OperationsPerInvocation(9999)
+    public int execute() throws IOException {
+        VirtualMachine vm = machine(cpuJob(1));
+        vm.run();
+        return vm.TTC;
+    }
+
+    // the same job with its CR/BT loop run as a compiled block, see BlockCompiler
+    @Benchmark
+    @OperationsPerInvocation(9999)
+    @Fork(value = 2, jvmArgsAppend = { "-Dos.trace=OFF", "-Dos.jit=1" })
+    public int executeCompiled() throws IOException {
+        return execute();
+    }
+
+    // a machine stopped in the middle of its cpu job with pages 0 and 2 mapped
+    @State(Scope.Thread)
+    public static class Translate {
+        VirtualMachine vm;
+        int i;
+
+        @Setup
+        public void setup() throws IOException {
+            vm = machine(cpuJob(1));
+            vm.run();
+            vm.pageFrame[0] = 3;
+            vm.pageFrame[2] = 7;
+            vm.opcode = VirtualMachine.OP_LR;
+            vm.instruction = VirtualMachine.OP_LR | VirtualMachine.NUMERIC_OPERAND;
+        }
+    }
+
+    // operand translation, over the eight words of page 2 it reads
+    @Benchmark
+    public int addressMap(Translate state) throws IOException {
+        return state.vm.AddressMap(20 + (state.i++ & 7));
+    }
+
+    // instruction fetch translation, over the first eight words of page 0
+    @Benchmark
+    public int getRealAddress(Translate state) throws IOException {
+        return state.vm.getRealAddress(state.i++ & 7);
+    }
+
+    @State(Scope.Thread)
+    public static class Allocate {
+        @Param({ "30", "3000", "300000" })
+        int frames;
+
+        @Param({ "sequential", "random" })
+        String order;
+
+        FrameAllocator allocator;
+
+        @Setup
+        public void setup() {
+            allocator = new FrameAllocator(frames, order.equals("random") ? new Random(1) : null);
+        }
+    }
+
+    // filling memory up completely, then releasing every frame again
+    @Benchmark
+    public void allocate(Allocate state, Blackhole blackhole) {
+        FrameAllocator allocator = state.allocator;
+        int frame;
+        while ((frame = allocator.allocate()) >= 0) {
+            blackhole.consume(frame);
+        }
+        for (frame = 0; frame < state.frames; frame++) {
+            allocator.release(frame);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Load {
+        @Param({ "10", "100", "1000", "10000" })
+        int jobs;
+
+        Path deck;
+
+        @Setup
+        public void setup() throws IOException {
+            deck = write(deck(jobs));
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.delete(deck);
+        }
+    }
+
+    // the whole batch path over a deck, splitting, running and spooling it
+    @Benchmark
+    public void load(Load state) throws IOException {
+        runBatch(state.deck, "platform");
+    }
+
+    // an I/O heavy deck with many jobs in flight
+    @State(Scope.Benchmark)
+    public static class Executors {
+        static final int JOBS = 20_000;
+
+        @Param({ "platform", "virtual" })
+        String executor;
+
+        Path deck;
+
+        @Setup
+        public void setup() throws IOException {
+            if (executor.equals("virtual") && !OSProjectPhase2.virtualThreads()) {
+                throw new IllegalStateException("executor virtual needs Java 21 or later");
+            }
+            StringBuilder deck = new StringBuilder();
+            for (int i = 0; i < JOBS; i++) {
+                deck.append(ioJob(i % 10000));
+            }
+            this.deck = write(deck.toString());
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.delete(deck);
+        }
+    }
+
+    // a pool of platform threads against a virtual thread per job, in jobs
+    @Benchmark
+    @OperationsPerInvocation(Executors.JOBS)
+    public void executors(Executors state) throws IOException {
+        runBatch(state.deck, state.executor);
+    }
+
+    // the file the deck checkpoints go to
+    @State(Scope.Thread)
+    public static class Deck {
+        Path file;
+
+        @Setup
+        public void setup() throws IOException {
+            file = Files.createTempFile("checkpoint", ".bin");
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // a deck checkpoint written, synced and moved over the last one, then read
+    // back the way a resumed run does
+    @Benchmark
+    public Checkpoint checkpoint(Deck state) throws IOException {
+        new Checkpoint(1000, 123_456_789L, 4_321_000L, 98_765_432L).write(state.file);
+        return Checkpoint.read(state.file);
+    }
+}
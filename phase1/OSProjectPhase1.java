@@ -1,144 +1,50 @@
 package phase1;
 
 import java.io.*;
+import phase2.VirtualMachine;
 
+// phase 1 runs on the same machine as phase 2, the fetch, decode and LR/SR/CR/BT
+// are the phase 2 engine's, with direct addressing in place of its page table,
+// what is left here is phase 1's operating system, loading the cards and GD, PD
+// and H, which reach it as interrupts
 public class OSProjectPhase1 {
 
     // components of virtual memory
 
-    public static char[] instructionRegister = new char[4]; // Instruction Register (IR)
-    public static char[] aRegister = new char[4]; // Accumulator Register (R)
-    public static int instructionCounter = 0; // Instruction Counter (IC)
-    public static boolean toggleRegister = false; // Comparison Toggle Register (C)
-    public static int systemInterrupt = 3; // System Interrupt (SI)
-    public static char[][] memory = new char[100][4]; // Memory M[100][4]
+    public static VirtualMachine machine; // The CPU with its registers and memory M[100], addressed directly
     public static BufferedReader input; // Input reader
-    public static FileWriter output; // Output writer
+    public static Writer output; // Output writer
 
-    // Initialize memory and registers
-    private static void init() {
-        for (int i = 0; i < 100; i++) {
-            for (int j = 0; j < 4; j++) {
-                memory[i][j] = ' ';
-            }
-        }
-        for (int i = 0; i < 4; i++) {
-            instructionRegister[i] = ' ';
-            aRegister[i] = ' ';
-        }
-        instructionCounter = 0;
-        toggleRegister = false;
-        systemInterrupt = 3; // Set default interrupt for halt
-    }
+    private static final int WORDS = 100; // Words of memory a program can address
+    private static final long BLANK = 0x20202020L; // A word of four spaces
 
-    // Fetch the instruction from memory
-    private static void fetchInstruction() {
-        for (int i = 0; i < 4; i++) {
-            instructionRegister[i] = memory[instructionCounter][i]; // Fetch the instruction from memory[IC]
-        }
-        instructionCounter++; // Increment the instruction counter after fetching
+    // Char i of a packed word, the first char sits in the high byte
+    private static char charAt(long word, int i) {
+        return (char) ((word >>> ((3 - i) * 8)) & 0xFF);
     }
 
-    // Start execution by setting IC to 0
-    private static void startExecution() throws IOException {
-        instructionCounter = 0;
-        executeUserProgram();
+    // Word with char i replaced by c
+    private static long setChar(long word, int i, char c) {
+        int shift = (3 - i) * 8;
+        return (word & ~(0xFFL << shift)) | ((long) (c & 0xFF) << shift);
     }
 
-    // Execute the loaded program
-    private static void executeUserProgram() throws IOException {
-        while (true) {
-            fetchInstruction(); // Fetch the next instruction
-            String opcode = "" + instructionRegister[0] + instructionRegister[1]; // Extract opcode
-
-            switch (opcode) {
-                case "LR":
-                    loadRegister();
-                    break;
-                case "SR":
-                    storeRegister();
-                    break;
-                case "CR":
-                    compareRegister();
-                    break;
-                case "BT":
-                    branchOnTrue();
-                    break;
-                case "GD":
-                    systemInterrupt = 1;
-                    mos();
-                    break;
-                case "PD":
-                    systemInterrupt = 2;
-                    mos();
-                    break;
-                case "H ":
-                    systemInterrupt = 3;
-                    mos();
-                    return;
-                default:
-                    System.out.println("Invalid opcode: " + opcode);
-                    return; // Abort execution on invalid opcode
-            }
-        }
+    // Chars of a packed word, for printing
+    private static String wordToString(long word) {
+        return "" + charAt(word, 0) + charAt(word, 1) + charAt(word, 2) + charAt(word, 3);
     }
 
-    // Load data from memory into the accumulator register R
-    private static void loadRegister() {
-        int address = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-        if (address >= 100) {
-            System.out.println("Address out of bounds during load.");
-            return;
-        }
-        for (int i = 0; i < 4; i++) {
-            aRegister[i] = memory[address][i]; // Load memory data into R
-        }
-        System.out.println("Loaded into R from memory[" + address + "]: " + String.valueOf(aRegister));
-    }
-
-    // Store data from accumulator register R into memory
-    private static void storeRegister() {
-        int address = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-        if (address >= 100) {
-            System.out.println("Address out of bounds during store.");
-            return;
-        }
-        for (int i = 0; i < 4; i++) {
-            memory[address][i] = aRegister[i]; // Store R data into memory
-        }
-        System.out.println("Stored R into memory[" + address + "]: " + String.valueOf(aRegister));
-    }
-
-    // Compare contents of register R with memory
-    private static void compareRegister() {
-        int address = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-        if (address >= 100) {
-            System.out.println("Address out of bounds during compare.");
-            return;
-        }
-        toggleRegister = true; // Assume equality
-        for (int i = 0; i < 4; i++) {
-            if (aRegister[i] != memory[address][i]) {
-                toggleRegister = false; // Set false if any byte mismatches
-                break;
-            }
+    // Initialize memory and registers
+    private static void init() {
+        for (int i = 0; i < WORDS; i++) {
+            machine.write(i, BLANK);
         }
-        System.out.println("Compared R with memory[" + address + "], toggleRegister = " + toggleRegister);
+        machine.init();
     }
 
-    // Branch to memory address if toggle register C is true
-    private static void branchOnTrue() {
-        if (toggleRegister) {
-            int address = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-            if (address >= 100) {
-                System.out.println("Address out of bounds during branch.");
-                return;
-            }
-            instructionCounter = address; // Set instruction counter to branch address
-            System.out.println("Branching to address: " + address);
-        } else {
-            System.out.println("Branch not taken.");
-        }
+    // Start execution by setting IC to 0
+    private static void startExecution() throws IOException {
+        machine.startExecution();
     }
 
     // Read data from input file and store in memory
@@ -149,26 +55,23 @@ public class OSProjectPhase1 {
             return;
         }
         // if user enters GD43, PD56, it is illegal , hence we handle this on the kernel
-        // side by making the last bit 0
+        // side by ignoring the last digit
         // Since GD, PD work Block wise
-        instructionRegister[3] = 0;
-        
+
         // TAKE ONLY THE SECOND LAST BIT AND MULTIPLY IT BY 10, SINCE GD, PD
         // instructions work blockwise
-        int address = (instructionRegister[2] - '0') * 10;
-        if (address >= 100) {
+        int address = (charAt(machine.instructionRegister(), 2) - '0') * 10;
+        if (address >= WORDS) {
             System.out.println("Address out of bounds during read.");
             return;
         }
-        int k = 0;
-        for (int i = 0; i < buffer.length() && i < 40; i++) {
-            memory[address][k++] = buffer.charAt(i);
-            if (k == 4) {
-                k = 0;
-                address++;
-                if (address >= 100)
-                    break;
+        int length = Math.min(buffer.length(), 40);
+        for (int i = 0; i < length && address < WORDS; i += 4, address++) {
+            long word = machine.read(address);
+            for (int k = 0; k < 4 && i + k < length; k++) {
+                word = setChar(word, k, buffer.charAt(i + k));
             }
+            machine.write(address, word); // Store the card four chars at a time
         }
         System.out.println("Data read into memory.");
     }
@@ -176,23 +79,16 @@ public class OSProjectPhase1 {
     // Write memory contents to output file
     private static void write() throws IOException {
         // TAKE ONLY THE SECOND LAST BIT AND MULTIPLY IT BY 10, SINCE GD, PD
-        // instructions work blockwise
-
-        // if user enters GD43, PD56, it is illegal , hence we handle this on the kernel
-        // side by making the last bit 0
-        // Since GD, PD work Block wise
-        instructionRegister[3] = 0;
-        int address = (instructionRegister[2] - '0') * 10;
+        // instructions work blockwise, the last digit is ignored
+        int address = (charAt(machine.instructionRegister(), 2) - '0') * 10;
 
-        if (address >= 100) {
+        if (address >= WORDS) {
             System.out.println("Address out of bounds during write.");
             return;
         }
         StringBuilder out = new StringBuilder();
-        for (int i = 0; i < 10 && address < 100; i++) {
-            for (int j = 0; j < 4; j++) {
-                out.append(memory[address][j]);
-            }
+        for (int i = 0; i < 10 && address < WORDS; i++) {
+            out.append(wordToString(machine.read(address))); // Copy out the block one word at a time
             address++;
         }
         output.write(out.toString().trim() + '\n');
@@ -203,12 +99,32 @@ public class OSProjectPhase1 {
     private static void terminate() throws IOException {
         output.write('\n');
         output.write('\n');
+        output.flush(); // The job's output goes out as soon as it ends
         System.out.println("Program terminated.");
+        machine.halt();
     }
 
-    // Memory Operating System (MOS) to handle interrupts
-    private static void mos() throws IOException {
-        switch (systemInterrupt) {
+    // Memory Operating System (MOS) to handle interrupts, the machine calls it for
+    // GD, PD and H and when the program cannot go on
+    private static void mos(VirtualMachine vm) throws IOException {
+        switch (vm.programInterrupt()) {
+            case 0:
+                break;
+            case 1:
+                long ir = vm.instructionRegister();
+                System.out.println("Invalid opcode: " + charAt(ir, 0) + charAt(ir, 1));
+                vm.halt(); // Abort execution on invalid opcode
+                return;
+            case 2:
+                System.out.println("Invalid operand: " + wordToString(vm.instructionRegister()));
+                vm.halt();
+                return;
+            default:
+                System.out.println("Address out of bounds.");
+                vm.halt();
+                return;
+        }
+        switch (vm.systemInterrupt()) {
             case 1:
                 read();
                 break;
@@ -238,10 +154,12 @@ public class OSProjectPhase1 {
                 System.out.println("End of job.");
             } else {
                 int k = 0;
-                for (int i = m; i < m + 10 && k < buffer.length() && i < 100; i++) {
+                for (int i = m; i < m + 10 && k < buffer.length() && i < WORDS; i++) {
+                    long word = machine.read(i);
                     for (int j = 0; j < 4 && k < buffer.length(); j++) {
-                        memory[i][j] = buffer.charAt(k++);
+                        word = setChar(word, j, buffer.charAt(k++));
                     }
+                    machine.write(i, word); // Decoded on its first fetch
                 }
                 m += 10;
             }
@@ -251,22 +169,34 @@ public class OSProjectPhase1 {
     // Print the current memory contents
     private static void printMemory() {
         System.out.println("Memory content:");
-        for (int i = 0; i < 100; i++) {
-            System.out.print("M[" + i + "]: ");
-            for (int j = 0; j < 4; j++) {
-                System.out.print(memory[i][j]);
-            }
-            System.out.println();
+        for (int i = 0; i < WORDS; i++) {
+            System.out.println("M[" + i + "]: " + wordToString(machine.read(i)));
         }
     }
 
     // Main function to initialize and start the OS simulation
+    // Usage: java OSProjectPhase1 [input] [output], input.txt and output.txt in the
+    // current directory by default, - reads the deck from stdin or writes to stdout
     public static void main(String[] args) {
+        machine = VirtualMachine.direct(WORDS, OSProjectPhase1::mos);
+        if (machine.wordChars() != 4) {
+            System.out.println("Phase 1 has 4 char words, os.word.chars is " + machine.wordChars());
+            return;
+        }
+
+        String inputName = args.length > 0 ? args[0] : "input.txt";
+        String outputName = args.length > 1 ? args[1] : "output.txt";
+        if (outputName.equals("-")) {
+            // Keep the progress messages out of the output
+            output = new BufferedWriter(new OutputStreamWriter(System.out));
+            System.setOut(System.err);
+        }
         try {
-            input = new BufferedReader(new FileReader(
-                    "D:/Study/Codes/VS projects/Java Projects/Operating System/os-cp/phase1/input.txt"));
-            output = new FileWriter(
-                    "D:/Study/Codes/VS projects/Java Projects/Operating System/os-cp/phase1/output.txt");
+            input = new BufferedReader(inputName.equals("-") ? new InputStreamReader(System.in)
+                    : new FileReader(inputName));
+            if (output == null) {
+                output = new BufferedWriter(new FileWriter(outputName));
+            }
             load(); // Load the jobs from input
             printMemory(); // Print memory contents after load
         } catch (IOException e) {
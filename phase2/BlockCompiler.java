@@ -0,0 +1,149 @@
+package phase2;
+
+import java.util.*;
+
+// the optional compiling tier of a paged machine, -Dos.jit=N compiles a basic
+// block once execution has entered it N times, 0 (the default) leaves every
+// instruction to the interpreter, at INSTRUCTION trace level it is always off
+// since every instruction has to leave its trace record
+// a block starts wherever the interpreter is about to fetch and runs straight
+// through LR/SR/CR up to and including the next BT, it never crosses the end of
+// its frame and stops before GD/PD/H and before anything the interpreter would
+// refuse or end the job for, so those stay with the interpreter
+// compiling a block decodes its instructions and works out the page and offset
+// of every operand once, running it translates the instruction counter once,
+// charges TTC and the instruction counts once for the whole block and checks
+// the time limit and the time slice once against its length, only as much of
+// it runs as they leave, an operand page that is not in memory hands the rest
+// back to the interpreter, which faults or pages it in as always
+// blocks are kept by the real address they start at, in chunks allocated the
+// first time a block of theirs is entered, like DecodeCache, and every block of
+// a frame is dropped as soon as a word of the frame is written
+final class BlockCompiler {
+    static final int THRESHOLD = Integer.getInteger("os.jit", 0);
+    static final boolean ENABLED = THRESHOLD > 0 && !Trace.INSTRUCTIONS;
+
+    private static final int CHUNK_SHIFT = DecodeCache.CHUNK_SHIFT;
+    private static final int CHUNK_WORDS = DecodeCache.CHUNK_WORDS;
+    private static final int CHUNK_MASK = DecodeCache.CHUNK_MASK;
+
+    static final class Block {
+        // times entered before it was compiled
+        int entries;
+
+        // instructions in the block, 0 until it is compiled and -1 when its
+        // first instruction cannot be compiled
+        int length;
+
+        // the words and decoded instructions of the block, and for every LR, SR
+        // and CR the logical page and the offset of its operand
+        long[] words;
+        int[] instructions;
+        int[] pages;
+        int[] offsets;
+
+        // instructions of the whole block by opcode, as JobMetrics counts them
+        final long[] counts = new long[VirtualMachine.OP_INVALID + 1];
+    }
+
+    private final VirtualMachine vm;
+    private final int size;
+
+    // null for a chunk no block was entered in
+    private final Block[][] chunks;
+
+    BlockCompiler(VirtualMachine vm, int size) {
+        this.vm = vm;
+        this.size = size;
+        this.chunks = new Block[(int) (((long) size + CHUNK_MASK) >>> CHUNK_SHIFT)][];
+    }
+
+    // the compiled block starting at the real address, null when it is not hot
+    // yet or cannot be compiled
+    Block enter(int address) {
+        int index = address >>> CHUNK_SHIFT;
+        Block[] chunk = chunks[index];
+        if (chunk == null) {
+            chunk = new Block[Math.min(CHUNK_WORDS, size - (index << CHUNK_SHIFT))];
+            chunks[index] = chunk;
+        }
+        Block block = chunk[address & CHUNK_MASK];
+        if (block == null) {
+            block = new Block();
+            chunk[address & CHUNK_MASK] = block;
+        }
+        if (block.length > 0) {
+            return block;
+        }
+        if (block.length < 0 || ++block.entries < THRESHOLD) {
+            return null;
+        }
+        compile(block, address);
+        return block.length > 0 ? block : null;
+    }
+
+    // drop every block of the frames [from, to) touches
+    void clear(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        if (from == to) {
+            return;
+        }
+        from = Geometry.base(Geometry.page(from));
+        to = Math.min(size, Geometry.base(Geometry.page(to - 1) + 1));
+        while (from < to) {
+            int index = from >>> CHUNK_SHIFT;
+            int end = Math.min(to, (index + 1) << CHUNK_SHIFT);
+            Block[] chunk = chunks[index];
+            if (chunk != null) {
+                Arrays.fill(chunk, from & CHUNK_MASK, ((end - 1) & CHUNK_MASK) + 1, null);
+            }
+            from = end;
+        }
+    }
+
+    private void compile(Block block, int address) {
+        int end = Geometry.base(Geometry.page(address) + 1);
+        int length = 0;
+        while (address + length < end) {
+            int insn = vm.decoded.get(address + length);
+            if (insn == 0) {
+                insn = vm.decode(address + length);
+            }
+            int opcode = insn & VirtualMachine.OPCODE_MASK;
+            int operand = insn >> VirtualMachine.OPERAND_SHIFT;
+            if (opcode < VirtualMachine.OP_LR || opcode > VirtualMachine.OP_BT
+                    || (insn & VirtualMachine.NUMERIC_OPERAND) == 0 || operand < 0) {
+                break;
+            }
+            // an operand past the page table ends the job, a branch past memory
+            // prints its complaint, both are left to the interpreter
+            if (opcode == VirtualMachine.OP_BT ? operand >= vm.memory.size()
+                    : Geometry.page(operand) >= vm.pageFrame.length) {
+                break;
+            }
+            length++;
+            if (opcode == VirtualMachine.OP_BT) {
+                break;
+            }
+        }
+        if (length == 0) {
+            block.length = -1;
+            return;
+        }
+
+        block.words = new long[length];
+        block.instructions = new int[length];
+        block.pages = new int[length];
+        block.offsets = new int[length];
+        for (int i = 0; i < length; i++) {
+            int insn = vm.decoded.get(address + i);
+            int operand = insn >> VirtualMachine.OPERAND_SHIFT;
+            block.words[i] = vm.memory.read(address + i);
+            block.instructions[i] = insn;
+            block.pages[i] = Geometry.page(operand);
+            block.offsets[i] = Geometry.offset(operand);
+            block.counts[insn & VirtualMachine.OPCODE_MASK]++;
+        }
+        block.length = length;
+    }
+}
@@ -0,0 +1,75 @@
+package phase2;
+
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+
+// one card of the deck, a view over the bytes it was read from rather than a copy
+// cards are plain ASCII so every byte is one char
+final class Card implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int start;
+    private final int length;
+
+    Card(ByteBuffer bytes, int start, int length) {
+        this.bytes = bytes;
+        this.start = start;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("card index " + index + ", length " + length);
+        }
+        return (char) (bytes.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("card range " + from + ".." + to + ", length " + length);
+        }
+        return new Card(bytes, start + from, to - from);
+    }
+
+    boolean startsWith(String prefix) {
+        if (prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes.get(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the decimal number in chars [from, to), used for the $AMJ fields, which
+    // are parsed straight from the bytes instead of through a substring
+    int parseInt(int from, int to) {
+        if (from >= to || to > length) {
+            throw new NumberFormatException("no number at " + from + ".." + to + " of card " + this);
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes.get(start + i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("not a number at " + from + ".." + to + " of card " + this);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(start, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
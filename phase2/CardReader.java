@@ -0,0 +1,23 @@
+package phase2;
+
+import java.io.*;
+import java.nio.*;
+
+// hands out the cards of a deck one at a time
+interface CardReader {
+    // the next card without its line end, or null after the last card
+    Card nextCard() throws IOException;
+
+    // byte offset in the deck of the card nextCard() returns next
+    long offset();
+
+    // line number, counting from 0, of the card nextCard() returns next
+    long line();
+
+    // go back (or forward) to a card boundary previously reported by offset() and line()
+    void seek(long offset, long line) throws IOException;
+
+    // the deck's bytes in [from, to), the cards of a job, which must still be
+    // readable from where the reader is
+    ByteBuffer slice(long from, long to) throws IOException;
+}
@@ -0,0 +1,84 @@
+package phase2;
+
+import java.io.*;
+import java.nio.file.*;
+
+// a compact binary snapshot, written with DataOutputStream, of where a batch got
+// to at a job boundary: the next job's place in the deck, the byte offset and
+// line of its $AMJ card and how many bytes of output were flushed before it,
+// enough to carry on from there, at a job boundary no job holds memory, pages
+// or registers, so that is all of the machine's state there is to keep
+// it starts with MAGIC, the format version and the kind, only deck checkpoints
+// are written now, the kind is kept so the format stays the same
+final class Checkpoint {
+    static final int MAGIC = 0x4F534350; // "OSCP"
+    static final int VERSION = 2;
+
+    static final int DECK = 1;
+
+    // the next job to run, its place in the deck and the output before it
+    final int sequence;
+    final long offset;
+    final long line;
+    final long outputBytes;
+
+    Checkpoint(int sequence, long offset, long line, long outputBytes) {
+        this.sequence = sequence;
+        this.offset = offset;
+        this.line = line;
+        this.outputBytes = outputBytes;
+    }
+
+    // the same place in the deck with the output position filled in
+    Checkpoint withOutput(long bytes) {
+        return new Checkpoint(sequence, offset, line, bytes);
+    }
+
+    // write the deck checkpoint to the file, through a temp file moved over it so
+    // a crash while writing leaves the previous checkpoint in place
+    void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream bytes = new FileOutputStream(temp.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+            header(out, DECK);
+            out.writeInt(sequence);
+            out.writeLong(offset);
+            out.writeLong(line);
+            out.writeLong(outputBytes);
+            out.flush();
+            bytes.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // the deck checkpoint in the file, null when there is none
+    static Checkpoint read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            header(in, DECK);
+            return new Checkpoint(in.readInt(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    private static void header(DataOutput out, int kind) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(kind);
+    }
+
+    private static void header(DataInput in, int kind) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a checkpoint");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("checkpoint version " + version + " is not supported, expected " + VERSION);
+        }
+        int found = in.readUnsignedByte();
+        if (found != kind) {
+            throw new IOException("checkpoint of kind " + found + ", expected " + kind);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package phase2;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// writes synthetic decks of any size for load tests, the same seed, mix and
+// number of jobs always give the same deck, run with
+//   java -cp <classes> phase2.DeckGenerator [jobs] [seed] [mix] > deck.txt
+// the mix weighs the kinds of job against each other, cpu=4,io=3,paging=2,error=1
+// by default:
+//   cpu     LR/SR/CR/BT loops that run until their time limit
+//   io      GD/PD pairs over up to eight pages, one line printed per card read
+//   paging  SRs to scattered pages and offsets, a fault for every new page
+//   error   a job that ends on one of the error paths of terminate(), out of
+//           data, line limit, time limit, opcode, operand or invalid page fault
+// the deck is written for the Geometry of the machine, a program card holds a
+// page of instructions, a data card up to a page of chars and the operands
+// have as many digits as a word leaves them
+public class DeckGenerator {
+    static final String[] KINDS = { "cpu", "io", "paging", "error" };
+    static final String MIX = "cpu=4,io=3,paging=2,error=1";
+
+    // the exit codes an error job is picked from, out of memory (9) is left out,
+    // it depends on the frames and the drum of the machine, not on the deck, 7 and
+    // 8 are too, the time limit is checked before an instruction is fetched so it
+    // never comes together with an opcode or operand error
+    static final int[] ERRORS = { 1, 2, 3, 4, 5, 6 };
+
+    // the data pages a job can use, page 0 and 1 are left to the program cards
+    static final int PAGES = Geometry.PAGE_TABLE_ENTRIES;
+
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ ";
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final Random random;
+
+    // cumulative weights of KINDS
+    private final int[] weights = new int[KINDS.length];
+
+    DeckGenerator(long seed, String mix) {
+        if (Geometry.PROBLEM != null) {
+            throw new IllegalArgumentException(Geometry.PROBLEM);
+        }
+        if (PAGES < 4) {
+            throw new IllegalArgumentException("generated jobs need a page table of 4 or more entries: " + PAGES);
+        }
+        this.random = new Random(seed);
+        int total = 0;
+        Map<String, Integer> parsed = parseMix(mix);
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            total += parsed.getOrDefault(KINDS[kind], 0);
+            weights[kind] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("the mix has no jobs in it: " + mix);
+        }
+    }
+
+    // kind=weight pairs separated by commas, kinds left out get no jobs
+    static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2 || !Arrays.asList(KINDS).contains(pair[0])) {
+                throw new IllegalArgumentException("mix must be kind=weight pairs of " + String.join(", ", KINDS)
+                        + ": " + mix);
+            }
+            int weight = Integer.parseInt(pair[1]);
+            if (weight < 0) {
+                throw new IllegalArgumentException("a weight cannot be negative: " + part);
+            }
+            weights.put(pair[0], weight);
+        }
+        return weights;
+    }
+
+    // write a deck of the given number of jobs
+    void write(Writer out, int jobs) throws IOException {
+        StringBuilder job = new StringBuilder();
+        for (int sequence = 0; sequence < jobs; sequence++) {
+            job.setLength(0);
+            next(job, sequence % 10000);
+            out.write(job.toString());
+        }
+    }
+
+    // the next job of the mix, jid is its job id
+    void next(StringBuilder job, int jid) {
+        int pick = random.nextInt(weights[weights.length - 1]);
+        int kind = 0;
+        while (pick >= weights[kind]) {
+            kind++;
+        }
+        switch (KINDS[kind]) {
+            case "cpu":
+                cpu(job, jid);
+                break;
+            case "io":
+                io(job, jid);
+                break;
+            case "paging":
+                paging(job, jid);
+                break;
+            default:
+                error(job, jid, ERRORS[random.nextInt(ERRORS.length)]);
+        }
+    }
+
+    // read a card into page 2, then loop over LR/SR/CR with the BT always taken,
+    // the job burns its whole time limit
+    private void cpu(StringBuilder job, int jid) {
+        List<String> program = new ArrayList<>();
+        program.add("GD" + address(2, 0));
+        int body = 1 + random.nextInt(2);
+        for (int i = 0; i < body; i++) {
+            program.add("LR" + address(2, 0));
+            int page = 3 + random.nextInt(PAGES - 3);
+            program.add("SR" + address(page, random.nextInt(Geometry.PAGE_WORDS)));
+            program.add("CR" + address(2, 0));
+        }
+        program.add("BT" + address(0, 1));
+        job(job, jid, 50 + random.nextInt(2000), 1, program, 1);
+    }
+
+    // read a card into each of a few pages and print it back
+    private void io(StringBuilder job, int jid) {
+        List<Integer> pages = pages(1 + random.nextInt(PAGES - 2));
+        List<String> program = new ArrayList<>();
+        for (int page : pages) {
+            program.add("GD" + address(page, 0));
+            program.add("PD" + address(page, 0));
+        }
+        program.add("H");
+        job(job, jid, program.size() + random.nextInt(10), pages.size(), program, pages.size());
+    }
+
+    // store the register all over the address space, so almost every SR is a
+    // page fault, and print a few of the pages
+    private void paging(StringBuilder job, int jid) {
+        List<String> program = new ArrayList<>();
+        program.add("GD" + address(2, 0));
+        program.add("LR" + address(2, 0));
+        List<Integer> pages = pages(Math.min(4 + random.nextInt(4), PAGES - 2));
+        for (int page : pages) {
+            program.add("SR" + address(page, random.nextInt(Geometry.PAGE_WORDS)));
+            if (random.nextBoolean()) {
+                program.add("SR" + address(pages.get(random.nextInt(pages.size())),
+                        random.nextInt(Geometry.PAGE_WORDS)));
+            }
+        }
+        int printed = Math.min(1 + random.nextInt(3), pages.size());
+        for (int i = 0; i < printed; i++) {
+            program.add("PD" + address(pages.get(i), 0));
+        }
+        program.add("H");
+        job(job, jid, program.size() + random.nextInt(10), printed, program, 1);
+    }
+
+    // a job that terminates with the given exit code
+    private void error(StringBuilder job, int jid, int code) {
+        String two = address(2, 0);
+        String three = address(3, 0);
+        switch (code) {
+            case 1: // out of data, two GDs and one card
+                job(job, jid, 10, 2, Arrays.asList("GD" + two, "PD" + two, "GD" + three, "PD" + three, "H"), 1);
+                break;
+            case 2: // line limit, two PDs with a limit of one line
+                job(job, jid, 10, 1, Arrays.asList("GD" + two, "PD" + two, "PD" + two, "H"), 1);
+                break;
+            case 3: // time limit, stopped in the middle of the program
+                job(job, jid, 2, 2, Arrays.asList("GD" + two, "LR" + two, "SR" + three, "PD" + three, "H"), 1);
+                break;
+            case 4: // operation code error
+                job(job, jid, 10, 1, Arrays.asList("GD" + two, badOpcode() + two, "H"), 1);
+                break;
+            case 5: // operand error, the last digit is a letter
+                String garbled = two.substring(0, two.length() - 1) + (char) ('A' + random.nextInt(26));
+                job(job, jid, 10, 1, Arrays.asList("GD" + two, "LR" + garbled, "H"), 1);
+                break;
+            default: // invalid page fault, a load from a page nothing was put in
+                job(job, jid, 10, 1, Arrays.asList("GD" + two, "LR" + address(3 + random.nextInt(PAGES - 3), 0),
+                        "H"), 1);
+        }
+    }
+
+    // the operand of the word at the offset in the logical page, in as many
+    // digits as an operand has
+    private static String address(int page, int offset) {
+        String digits = Integer.toString(page * Geometry.PAGE_WORDS + offset);
+        return "0".repeat(Geometry.DIGITS - digits.length()) + digits;
+    }
+
+    // two letters that are not an opcode
+    private String badOpcode() {
+        while (true) {
+            String opcode = "" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26));
+            if (!opcode.matches("GD|PD|LR|SR|CR|BT|H.")) {
+                return opcode;
+            }
+        }
+    }
+
+    // count different data pages, in random order
+    private List<Integer> pages(int count) {
+        List<Integer> pages = new ArrayList<>();
+        for (int page = 2; page < PAGES; page++) {
+            pages.add(page);
+        }
+        Collections.shuffle(pages, random);
+        return pages.subList(0, count);
+    }
+
+    // the cards of a job, a page of instructions to a program card, H is always
+    // the last instruction so it never shares a word with another one
+    private void job(StringBuilder job, int jid, int ttl, int tll, List<String> program, int dataCards) {
+        digits(job.append("$AMJ"), jid);
+        digits(job, ttl);
+        digits(job, tll).append(NEWLINE);
+        for (int i = 0; i < program.size(); i += Geometry.PAGE_WORDS) {
+            for (String instruction : program.subList(i, Math.min(i + Geometry.PAGE_WORDS, program.size()))) {
+                job.append(instruction);
+            }
+            job.append(NEWLINE);
+        }
+        job.append("$DTA").append(NEWLINE);
+        for (int i = 0; i < dataCards; i++) {
+            int length = 1 + random.nextInt(Geometry.LINE_CHARS);
+            for (int c = 0; c < length; c++) {
+                job.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            job.append(NEWLINE);
+        }
+        digits(job.append("$END"), jid).append(NEWLINE);
+    }
+
+    // the number in four digits, like the fields of the $AMJ card
+    private static StringBuilder digits(StringBuilder job, int n) {
+        return job.append((char) ('0' + n / 1000 % 10)).append((char) ('0' + n / 100 % 10))
+                .append((char) ('0' + n / 10 % 10)).append((char) ('0' + n % 10));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        String mix = args.length > 2 ? args[2] : MIX;
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.ISO_8859_1), 1 << 16);
+        new DeckGenerator(seed, mix).write(out, jobs);
+        out.flush();
+    }
+}
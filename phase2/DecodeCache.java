@@ -0,0 +1,57 @@
+package phase2;
+
+import java.util.*;
+
+// the decoded instructions of a machine's memory, one int per word, 0 meaning
+// not decoded yet, kept in chunks that are only allocated the first time a word
+// of the chunk is decoded, so like off-heap memory a machine with millions of
+// frames only pays for the frames its jobs run code from, a chunk is never
+// larger than the memory, so a small machine still has a single small array
+final class DecodeCache {
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_WORDS - 1;
+
+    private final int size;
+
+    // null for a chunk nothing was decoded in
+    private final int[][] chunks;
+
+    DecodeCache(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("memory cannot have a negative size: " + size);
+        }
+        this.size = size;
+        this.chunks = new int[(int) (((long) size + CHUNK_MASK) >>> CHUNK_SHIFT)][];
+    }
+
+    // the decoded instruction at the address, 0 when there is none
+    int get(int address) {
+        int[] chunk = chunks[address >>> CHUNK_SHIFT];
+        return chunk == null ? 0 : chunk[address & CHUNK_MASK];
+    }
+
+    void set(int address, int instruction) {
+        int index = address >>> CHUNK_SHIFT;
+        int[] chunk = chunks[index];
+        if (chunk == null) {
+            chunk = new int[Math.min(CHUNK_WORDS, size - (index << CHUNK_SHIFT))];
+            chunks[index] = chunk;
+        }
+        chunk[address & CHUNK_MASK] = instruction;
+    }
+
+    // forget the decoded instructions of [from, to)
+    void clear(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        while (from < to) {
+            int index = from >>> CHUNK_SHIFT;
+            int end = Math.min(to, (index + 1) << CHUNK_SHIFT);
+            int[] chunk = chunks[index];
+            if (chunk != null) {
+                Arrays.fill(chunk, from & CHUNK_MASK, ((end - 1) & CHUNK_MASK) + 1, 0);
+            }
+            from = end;
+        }
+    }
+}
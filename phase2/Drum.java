@@ -0,0 +1,64 @@
+package phase2;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+// the backing store pages are written out to when memory is full, a temp file
+// mapped into memory with one slot of a page's words per page, the file is
+// deleted as soon as it is mapped so nothing is left behind however the run ends
+final class Drum {
+    // words in a slot, one page
+    static final int PAGE_WORDS = Geometry.PAGE_WORDS;
+
+    private final LongBuffer slots;
+    private final BitSet used;
+    private final int capacity;
+
+    Drum(int pages) throws IOException {
+        if (pages < 1) {
+            throw new IllegalArgumentException("the drum needs at least one page: " + pages);
+        }
+        Path file = Files.createTempFile("drum", ".swap");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            // the mapping stays valid after the channel is closed
+            slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) pages * PAGE_WORDS * Long.BYTES)
+                    .asLongBuffer();
+        }
+        used = new BitSet(pages);
+        capacity = pages;
+    }
+
+    // take a free slot, -1 when the drum is full
+    int allocate() {
+        int slot = used.nextClearBit(0);
+        if (slot >= capacity) {
+            return -1;
+        }
+        used.set(slot);
+        return slot;
+    }
+
+    void release(int slot) {
+        used.clear(slot);
+    }
+
+    // copy the page at the given memory address into the slot
+    void write(int slot, Memory memory, int address) {
+        int base = slot * PAGE_WORDS;
+        for (int w = 0; w < PAGE_WORDS; w++) {
+            slots.put(base + w, memory.read(address + w));
+        }
+    }
+
+    // copy the page in the slot back into memory at the given address
+    void read(int slot, Memory memory, int address) {
+        int base = slot * PAGE_WORDS;
+        for (int w = 0; w < PAGE_WORDS; w++) {
+            memory.write(address + w, slots.get(base + w));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package phase2;
+
+import java.util.*;
+
+// keeps track of which memory frames are free, a set bit means the frame is in use
+// frames are handed out lowest first, or from a random starting point when a
+// Random is given, seed that Random to get the same placement on every run
+final class FrameAllocator {
+    private final BitSet used;
+    private final int frames;
+    private final Random random;
+    private int free;
+
+    // no frame below this one is free, so the lowest first search starts here
+    private int lowestFree;
+
+    FrameAllocator(int frames, Random random) {
+        this.used = new BitSet(frames);
+        this.frames = frames;
+        this.random = random;
+        this.free = frames;
+    }
+
+    // mark a free frame as used and return it, or -1 when every frame is taken
+    int allocate() {
+        if (free == 0) {
+            return -1;
+        }
+
+        int start = random == null ? lowestFree : random.nextInt(frames);
+        int frame = used.nextClearBit(start);
+        if (frame >= frames) {
+            // nothing free after the starting point, wrap around to the start
+            start = lowestFree;
+            frame = used.nextClearBit(start);
+        }
+        if (start == lowestFree) {
+            // the search started at the lowest bound, so every frame below this one is used
+            lowestFree = frame + 1;
+        }
+
+        used.set(frame);
+        free--;
+        return frame;
+    }
+
+    // give a frame back so it can be allocated again
+    void release(int frame) {
+        if (used.get(frame)) {
+            used.clear(frame);
+            free++;
+            lowestFree = Math.min(lowestFree, frame);
+        }
+    }
+
+    int freeFrames() {
+        return free;
+    }
+
+    // frames it hands out, 0 up to this
+    int frames() {
+        return frames;
+    }
+}
@@ -0,0 +1,97 @@
+package phase2;
+
+// the shape of the machine, read once from system properties, so the JIT sees
+// every one of them as a constant:
+//   os.word.chars        chars in a word, 2 for the opcode and the rest for the
+//                        operand digits, 3 to 8 (8 bits a char in a long), 4
+//   os.page.words        words in a page and in a frame, a data card fills one
+//                        and a PD prints one, 10
+//   os.memory.words      words of real memory, a whole number of frames, 300
+//   os.pagetable.entries pages a job can have, its page table is one frame, so
+//                        no more than a page has words, and every page has to
+//                        be in reach of the operand digits, as many as can be
+//                        by default
+// a page size that is a power of two turns the page and offset of an address
+// into a shift and a mask, any other is a division by a constant
+// a page table entry is the valid digit, the referenced/dirty digit and the frame
+// in the remaining digits, so there can be no more frames than those can number
+final class Geometry {
+    static final int WORD_CHARS = Integer.getInteger("os.word.chars", 4);
+    static final int PAGE_WORDS = Integer.getInteger("os.page.words", 10);
+    static final int MEMORY_WORDS = Integer.getInteger("os.memory.words", 300);
+
+    // digits of an operand and of a frame number in a page table entry, and the
+    // addresses they reach
+    static final int DIGITS = WORD_CHARS - 2;
+    static final long REACH = reach(DIGITS);
+
+    static final int FRAMES = PAGE_WORDS > 0 ? MEMORY_WORDS / PAGE_WORDS : 0;
+    static final int PAGE_TABLE_ENTRIES = Integer.getInteger("os.pagetable.entries",
+            PAGE_WORDS > 0 ? (int) Math.min(PAGE_WORDS, REACH / PAGE_WORDS) : 0);
+
+    // chars on a card a GD reads or a line a PD prints
+    static final int LINE_CHARS = WORD_CHARS * PAGE_WORDS;
+
+    static final boolean POWER_OF_TWO = PAGE_WORDS > 0 && (PAGE_WORDS & (PAGE_WORDS - 1)) == 0;
+    static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_WORDS);
+    static final int PAGE_MASK = PAGE_WORDS - 1;
+
+    // what is wrong with the geometry, null when nothing is
+    static final String PROBLEM = check();
+
+    private Geometry() {
+    }
+
+    private static long reach(int digits) {
+        long reach = 1;
+        for (int i = 0; i < digits; i++) {
+            reach *= 10;
+        }
+        return reach;
+    }
+
+    private static String check() {
+        if (WORD_CHARS < 3 || WORD_CHARS > 8) {
+            return "os.word.chars must be between 3 and 8: " + WORD_CHARS;
+        }
+        if (PAGE_WORDS < 1) {
+            return "os.page.words must be 1 or more: " + PAGE_WORDS;
+        }
+        if (MEMORY_WORDS < 2L * PAGE_WORDS || MEMORY_WORDS % PAGE_WORDS != 0) {
+            return "os.memory.words must be a whole number of pages of " + PAGE_WORDS + " words, at least two: "
+                    + MEMORY_WORDS;
+        }
+        if (FRAMES > REACH) {
+            return "a page table entry of a " + WORD_CHARS + " char word numbers " + REACH + " frames, "
+                    + "os.memory.words has " + FRAMES;
+        }
+        if (PAGE_TABLE_ENTRIES < 1 || PAGE_TABLE_ENTRIES > PAGE_WORDS) {
+            return "os.pagetable.entries must be between 1 and the " + PAGE_WORDS + " words of a page: "
+                    + PAGE_TABLE_ENTRIES;
+        }
+        if ((long) PAGE_TABLE_ENTRIES * PAGE_WORDS > REACH) {
+            return "os.pagetable.entries reaches past the " + REACH + " addresses of a " + DIGITS
+                    + " digit operand: " + PAGE_TABLE_ENTRIES;
+        }
+        return null;
+    }
+
+    // the page of an address, and its offset in the page
+    static int page(int address) {
+        return POWER_OF_TWO ? address >> PAGE_SHIFT : address / PAGE_WORDS;
+    }
+
+    static int offset(int address) {
+        return POWER_OF_TWO ? address & PAGE_MASK : address % PAGE_WORDS;
+    }
+
+    // the address a frame starts at
+    static int base(int frame) {
+        return POWER_OF_TWO ? frame << PAGE_SHIFT : frame * PAGE_WORDS;
+    }
+
+    static String describe() {
+        return String.format("%d words of %d chars, %d frames of %d words, %d page table entries", MEMORY_WORDS,
+                WORD_CHARS, FRAMES, PAGE_WORDS, PAGE_TABLE_ENTRIES);
+    }
+}
@@ -0,0 +1,70 @@
+package phase2;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+// the input spooling stage of a batch: reads the deck on a thread of its own,
+// stages every job's program and data cards in memory and starts it, so card
+// I/O overlaps with the jobs running, the started jobs are queued in deck order
+// and at most ahead of them are waiting to be taken, when the output falls
+// behind reading the deck waits too
+final class InputSpooler implements Closeable {
+    // starts a job, may wait until there is room for it
+    interface Start {
+        Future<?> start(Job job) throws InterruptedException;
+    }
+
+    // marks the end of the deck on the queue
+    private static final Job END = new Job(-1, null, 0, 0, 0, 0);
+
+    private final CardReader deck;
+    private final int first;
+    private final Start start;
+    private final BlockingQueue<Job> started;
+    private final Thread reader;
+
+    // first is the sequence number of the first job read, more than 0 when a
+    // batch is resumed from a checkpoint
+    InputSpooler(CardReader deck, int first, Start start, int ahead) {
+        this.deck = deck;
+        this.first = first;
+        this.start = start;
+        this.started = new ArrayBlockingQueue<>(ahead);
+        this.reader = new Thread(this::spool, "input-spooler");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void spool() {
+        try {
+            try {
+                Job job;
+                for (int sequence = first; (job = Job.next(deck, sequence)) != null; sequence++) {
+                    job.stage();
+                    job.result = start.start(job);
+                    started.put(job);
+                }
+            } catch (IOException | RuntimeException e) {
+                // the job that could not be read fails in its place in the deck
+                Job failed = new Job(-1, null, deck.offset(), deck.line(), deck.offset(), deck.line());
+                failed.result = CompletableFuture.failedFuture(e);
+                started.put(failed);
+            }
+            started.put(END);
+        } catch (InterruptedException e) {
+            // closed before the whole deck was read
+        }
+    }
+
+    // the next job in deck order, already started, null after the last one
+    Job next() throws InterruptedException {
+        Job job = started.take();
+        return job == END ? null : job;
+    }
+
+    // stop reading the deck, jobs not taken yet are dropped
+    @Override
+    public void close() {
+        reader.interrupt();
+    }
+}
@@ -0,0 +1,178 @@
+package phase2;
+
+import java.io.*;
+import java.util.*;
+
+// the interrupt controller of a machine: raising an interrupt only queues its
+// code, and the execute loop services everything queued once, at the
+// instruction boundary, so an interrupt never runs inside the translation or
+// the instruction that raised it, the one that raised it stops and returns
+// the pending interrupts are a queue per kind, oldest first, and the kinds are
+// taken in priority order, the timer, then program interrupts, then supervisor
+// calls, every round moves the oldest code of each kind into its register, TI,
+// PI or SI, and the combination of the three picks the handler out of a table
+// the registers are cleared when the round is over, so a combination only ever
+// holds interrupts of its own round, never one a handler left behind
+// a machine with a supervisor hands every round to it in place of the table
+final class Interrupts {
+    // the kinds of interrupt, in priority order
+    static final int TIMER = 0;
+    static final int PROGRAM = 1;
+    static final int SUPERVISOR = 2;
+    private static final int KINDS = 3;
+
+    // interrupts of one kind that can wait at the same time
+    static final int DEPTH = 8;
+
+    interface Handler {
+        void service(VirtualMachine vm) throws IOException;
+    }
+
+    // handlers by TI, PI and SI, see index(), the timer takes priority over a
+    // program interrupt and that over a supervisor call
+    private static final Handler[] HANDLERS = new Handler[2 * 4 * 4];
+    static {
+        for (int ti = 0; ti <= 2; ti += 2) {
+            for (int pi = 0; pi < 4; pi++) {
+                for (int si = 0; si < 4; si++) {
+                    HANDLERS[index(ti, pi, si)] = handler(ti, pi, si);
+                }
+            }
+        }
+    }
+
+    private final VirtualMachine vm;
+    private final VirtualMachine.Supervisor supervisor;
+
+    // the queued codes, a ring of DEPTH for every kind, and where each ring
+    // starts and how much of it is used
+    private final int[] codes = new int[KINDS * DEPTH];
+    private final int[] first = new int[KINDS];
+    private final int[] queued = new int[KINDS];
+
+    // interrupts raised and not serviced yet, all the execute loop looks at
+    int pending;
+
+    Interrupts(VirtualMachine vm, VirtualMachine.Supervisor supervisor) {
+        this.vm = vm;
+        this.supervisor = supervisor;
+    }
+
+    private static int index(int ti, int pi, int si) {
+        return ((ti == 0 ? 0 : 4) + pi) * 4 + si;
+    }
+
+    private static Handler handler(int ti, int pi, int si) {
+        // time limit exceeded, a PD on the way still prints its line
+        if (ti != 0) {
+            if (pi == 1) {
+                return vm -> vm.terminate(7);
+            }
+            if (pi == 2) {
+                return vm -> vm.terminate(8);
+            }
+            if (si == 2) {
+                return vm -> {
+                    vm.write();
+                    vm.terminate(3);
+                };
+            }
+            return vm -> vm.terminate(3);
+        }
+
+        // program interrupts, a page fault raised here is always an invalid one,
+        // GD and SR get a frame for theirs while they translate their operand
+        switch (pi) {
+            case 1:
+                return vm -> vm.terminate(4);
+            case 2:
+                return vm -> vm.terminate(5);
+            case 3:
+                return vm -> vm.terminate(6);
+        }
+
+        // supervisor calls
+        switch (si) {
+            case 1:
+                return VirtualMachine::read;
+            case 2:
+                return vm -> {
+                    if (vm.LLC >= vm.pcb.TLL) {
+                        vm.terminate(2);
+                    } else {
+                        vm.write();
+                    }
+                };
+            case 3:
+                return vm -> vm.terminate(0);
+            default:
+                return vm -> {
+                };
+        }
+    }
+
+    // queue the interrupt, it is serviced at the next instruction boundary
+    void raise(int kind, int code) {
+        if (queued[kind] == DEPTH) {
+            throw new IllegalStateException("more than " + DEPTH + " interrupts of kind " + kind + " pending");
+        }
+        codes[kind * DEPTH + (first[kind] + queued[kind]) % DEPTH] = code;
+        queued[kind]++;
+        pending++;
+    }
+
+    // drop everything pending, for a job that ends without its interrupts serviced
+    void clear() {
+        Arrays.fill(queued, 0);
+        pending = 0;
+    }
+
+    // service what is pending, a round at a time, a handler may raise another
+    // interrupt, which is serviced in a round of its own before this returns
+    void service() throws IOException {
+        while (pending != 0) {
+            for (int kind = TIMER; kind <= SUPERVISOR; kind++) {
+                if (queued[kind] > 0) {
+                    register(kind, codes[kind * DEPTH + first[kind]]);
+                    first[kind] = (first[kind] + 1) % DEPTH;
+                    queued[kind]--;
+                    pending--;
+                }
+            }
+
+            // count the interrupts being serviced
+            JobMetrics metrics = vm.metrics;
+            if (vm.SI != 0) {
+                metrics.supervisorInterrupts++;
+            }
+            if (vm.PI != 0) {
+                metrics.programInterrupts++;
+            }
+            if (vm.TI != 0) {
+                metrics.timerInterrupts++;
+            }
+
+            if (supervisor != null) {
+                supervisor.interrupt(vm);
+            } else {
+                HANDLERS[index(vm.TI, vm.PI, vm.SI)].service(vm);
+            }
+            vm.TI = 0;
+            vm.PI = 0;
+            vm.SI = 0;
+        }
+    }
+
+    private void register(int kind, int code) {
+        switch (kind) {
+            case TIMER:
+                vm.TI = code;
+                break;
+            case PROGRAM:
+                vm.PI = code;
+                break;
+            default:
+                vm.SI = code;
+        }
+    }
+}
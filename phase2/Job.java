@@ -0,0 +1,103 @@
+package phase2;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// one job of the deck, the cards from its $AMJ card up to the next $AMJ, kept
+// with its position in the deck so its output can be written back in order
+class Job {
+    final int sequence;
+
+    // the job's cards, a view of the mapped deck or a copy of the streamed one,
+    // and where they start in it
+    final ByteBuffer cards;
+    final long offset;
+    final long line;
+
+    // where the next job starts, a batch can be resumed there once this one is done
+    final long end;
+    final long endLine;
+
+    // done once the job's output is in the reorder window, after the input
+    // spooler has started it
+    Future<?> result;
+
+    Job(int sequence, ByteBuffer cards, long offset, long line, long end, long endLine) {
+        this.sequence = sequence;
+        this.cards = cards;
+        this.offset = offset;
+        this.line = line;
+        this.end = end;
+        this.endLine = endLine;
+    }
+
+    // the deck checkpoint to resume from after this job, output position not yet known
+    Checkpoint next() {
+        return new Checkpoint(sequence + 1, end, endLine, 0);
+    }
+
+    // read the next job off the deck, every job starts at an $AMJ card and runs up
+    // to the next one, cards before the first $AMJ do not belong to any job,
+    // returns null when the deck has no more jobs
+    static Job next(CardReader deck, int sequence) throws IOException {
+        long start = -1;
+        long startLine = 0;
+        while (true) {
+            long offset = deck.offset();
+            long line = deck.line();
+            Card card = deck.nextCard();
+            if (card == null || card.startsWith("$AMJ")) {
+                if (start >= 0) {
+                    // leave the next job's $AMJ card to be read again
+                    deck.seek(offset, line);
+                    return new Job(sequence, deck.slice(start, offset), start, startLine, offset, line);
+                }
+                if (card == null) {
+                    return null;
+                }
+                start = offset;
+                startLine = line;
+            }
+        }
+    }
+
+    // bring the job's cards into memory now, so reading them while the job runs
+    // never waits on the disk
+    void stage() {
+        if (cards instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) cards).load();
+        }
+    }
+
+    // runs the job on a fresh machine and returns what it wrote to the output,
+    // a seeded job gets its own seed from its place in the deck so the frames it
+    // is given do not depend on which thread ran it or when
+    String run(Long seed) throws IOException {
+        StringWriter result = new StringWriter();
+        run(seed, new BufferedWriter(result));
+        return result.toString();
+    }
+
+    // the same with the output going to the writer, returns the machine as the
+    // job left it
+    VirtualMachine run(Long seed, BufferedWriter output) throws IOException {
+        return run(seed, OSProjectPhase2.FRAMES, output);
+    }
+
+    // the same on a machine that may use the given number of frames
+    VirtualMachine run(Long seed, int frameCount, BufferedWriter output) throws IOException {
+        Random random = seed == null ? new Random() : new Random(seed + sequence);
+        FrameAllocator frames = new FrameAllocator(frameCount, OSProjectPhase2.RANDOM_PLACEMENT ? random : null);
+
+        VirtualMachine vm = new VirtualMachine(new MappedCardReader(cards, offset, line), output, frames);
+        vm.pcb.sequence = sequence;
+        vm.run();
+        if (Trace.JOBS && vm.evictions > 0) {
+            System.out.println("Job " + sequence + " paged: " + vm.pageFaults + " page faults, " + vm.evictions
+                    + " evictions");
+        }
+        return vm;
+    }
+}
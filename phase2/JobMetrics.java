@@ -0,0 +1,46 @@
+package phase2;
+
+// what one job did, counted by the machine while it runs and handed to the
+// deck's Metrics when it ends
+final class JobMetrics {
+    int jid;
+    int sequence;
+
+    // instructions executed, indexed by opcode
+    final long[] instructions = new long[VirtualMachine.OP_INVALID + 1];
+
+    // valid faults got a frame, invalid ones ended the job
+    long validFaults;
+    long invalidFaults;
+    long evictions;
+
+    // TLB lookups that found the page and that had to walk the page table, and
+    // flushes of the whole TLB, all 0 while the TLB is off
+    long tlbHits;
+    long tlbMisses;
+    long tlbFlushes;
+
+    // interrupts serviced by the interrupt controller, by kind
+    long supervisorInterrupts;
+    long programInterrupts;
+    long timerInterrupts;
+
+    // data cards read by GD and lines printed by PD
+    long cardsRead;
+    long linesPrinted;
+
+    // the message code the job ended with, -1 while it runs
+    int exitCode = -1;
+
+    // wall clock time from loading the job to its end
+    long started = System.nanoTime();
+    long turnaround;
+
+    long instructions() {
+        long total = 0;
+        for (long n : instructions) {
+            total += n;
+        }
+        return total;
+    }
+}
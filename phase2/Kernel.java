@@ -0,0 +1,154 @@
+package phase2;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+// a multiprogramming kernel on one machine: several jobs are resident in memory
+// at once, each with its own PCB, page table and registers, the CPU goes to the
+// job the Scheduler picks from the ready queue and is taken back by the timer
+// interrupt at the end of its time slice, a GD or PD moves the job to the blocked
+// queue for as long as its card I/O takes, in the meantime other jobs run
+// time is counted in clock ticks, one per instruction
+final class Kernel {
+    // called with every finished job's place in the deck and its output
+    interface Finished {
+        void finished(int sequence, String output) throws IOException;
+    }
+
+    // hands out the jobs in deck order as they are read, null after the last one
+    interface Jobs {
+        Job next() throws IOException;
+    }
+
+    private final VirtualMachine vm;
+    private final Scheduler scheduler;
+    private final int ioTicks;
+
+    // jobs waiting for their I/O, the one that is done first at the head
+    private final PriorityQueue<VirtualMachine.PCB> blocked = new PriorityQueue<>(
+            Comparator.comparingLong(pcb -> pcb.readyAt));
+
+    long clock;
+    long busy;
+    long turnaround;
+    int finished;
+
+    Kernel(VirtualMachine vm, Scheduler scheduler, int ioTicks) {
+        this.vm = vm;
+        this.scheduler = scheduler;
+        this.ioTicks = ioTicks;
+        vm.blockOnIO = true;
+    }
+
+    // run every job to the end, jobs are loaded in deck order as long as memory
+    // has a frame for the job's page table and one for a page and admits lets it
+    // in, with demand paging the rest of its pages can live on the drum, a job is
+    // only read off the deck when there is room for it
+    void run(Jobs jobs, IntPredicate admits, Finished done) throws IOException {
+        Job waiting = jobs.next();
+        int resident = 0;
+
+        while (waiting != null || resident > 0) {
+            // load jobs while there is memory for them
+            while (waiting != null && (resident == 0 || vm.frames.freeFrames() >= 2)
+                    && admits.test(waiting.sequence)) {
+                if (admit(waiting, done)) {
+                    resident++;
+                }
+                waiting = jobs.next();
+            }
+
+            // jobs whose I/O is done are ready again
+            while (!blocked.isEmpty() && blocked.peek().readyAt <= clock) {
+                scheduler.ready(blocked.poll());
+            }
+
+            VirtualMachine.PCB next = scheduler.next();
+            if (next == null) {
+                // every job is waiting for I/O, the CPU idles until the first is done
+                clock = blocked.peek().readyAt;
+                continue;
+            }
+
+            // dispatch the job for one time slice
+            vm.restore(next);
+            vm.blocked = false;
+            vm.sliceLeft = scheduler.slice();
+            int before = vm.TTC;
+            try {
+                vm.executeUserProgram();
+            } catch (RuntimeException e) {
+                // a job that breaks the machine is ended on the spot, the others go on
+                System.out.println("Job " + next.JID + " (#" + next.sequence + ") failed:");
+                e.printStackTrace(System.out);
+                vm.interrupts.clear();
+                vm.terminate = true;
+            }
+            long ticks = Math.max(1, vm.TTC - before);
+            clock += ticks;
+            busy += ticks;
+
+            if (vm.terminate) {
+                finish(done);
+                resident--;
+            } else if (vm.blocked) {
+                vm.save();
+                next.readyAt = clock + ioTicks;
+                blocked.add(next);
+            } else {
+                // the timer interrupt took the CPU away, back to the ready queue
+                vm.save();
+                scheduler.ready(next);
+            }
+        }
+
+        if (Trace.JOBS && finished > 0) {
+            System.out.printf("Multiprogramming: %d jobs in %d ticks, CPU busy %.1f%%, average turnaround %.1f ticks,"
+                    + " %d page faults, %d evictions%n", finished, clock, 100.0 * busy / Math.max(1, clock),
+                    (double) turnaround / finished, vm.pageFaults, vm.evictions);
+        }
+        if (Trace.JOBS && Tlb.ENABLED) {
+            System.out.printf("TLB: %d hits, %d misses (%.1f%% hit rate), %d flushes%n",
+                    vm.tlb.hits, vm.tlb.misses, vm.tlb.hitRate(), vm.tlb.flushes);
+        }
+    }
+
+    // load a job into memory with a fresh PCB, returns true when it is resident
+    // and ready to run, a job that cannot run is finished right away
+    private boolean admit(Job job, Finished done) throws IOException {
+        VirtualMachine.PCB pcb = new VirtualMachine.PCB();
+        pcb.sequence = job.sequence;
+        pcb.result = new StringWriter();
+
+        vm.pcb = pcb;
+        vm.input = new MappedCardReader(job.cards, job.offset, job.line);
+        vm.output = new BufferedWriter(pcb.result);
+        vm.pageFrame = new int[vm.pageFrame.length];
+        vm.trace = new Trace();
+
+        Card buffer = vm.loadJob(vm.input.nextCard());
+        if (buffer == null || !buffer.startsWith("$DTA")) {
+            vm.endJob(buffer);
+            finish(pcb, done);
+            return false;
+        }
+
+        vm.save();
+        scheduler.ready(pcb);
+        return true;
+    }
+
+    // the running job has terminated, skip its remaining cards and free its memory
+    private void finish(Finished done) throws IOException {
+        vm.endJob(vm.input.nextCard());
+        finish(vm.pcb, done);
+    }
+
+    private void finish(VirtualMachine.PCB pcb, Finished done) throws IOException {
+        vm.output.flush();
+        turnaround += clock;
+        finished++;
+        done.finished(pcb.sequence, pcb.result.toString());
+    }
+}
@@ -0,0 +1,63 @@
+package phase2;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// drives a generated deck through the whole batch path and reports what it got
+// through, run with
+//   java -cp <classes> phase2.LoadTest [jobs] [seed] [mix]
+// the deck comes from DeckGenerator, see there for the mix, it is written to a
+// temp file first so generating it is not timed, then run like OSProjectPhase2
+// runs a deck, in the os.mode on os.threads and so on, with the output thrown
+// away, turnaround percentiles are the upper bound of their histogram bucket,
+// less than 1% over the real one
+public class LoadTest {
+    public static void main(String[] args) throws Exception {
+        // the machine must not print while it is being timed
+        System.setProperty("os.trace", "OFF");
+
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        String mix = args.length > 2 ? args[2] : DeckGenerator.MIX;
+
+        Path file = Files.createTempFile("load", ".txt");
+        try {
+            long start = System.nanoTime();
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+                new DeckGenerator(seed, mix).write(out, jobs);
+            }
+            System.out.printf("generated %d jobs (%s), %.1f MB in %.2f s%n", jobs, mix, Files.size(file) / 1e6,
+                    (System.nanoTime() - start) / 1e9);
+
+            Metrics.DECK.register();
+            start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                    OutputSpooler spooler = new OutputSpooler(Writer.nullWriter(), "deck")) {
+                OSProjectPhase2.run(new MappedCardReader(channel), 0, spooler);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Metrics metrics = Metrics.DECK;
+            System.out.printf("mode %s, %d threads, %d frames used of %s%n", OSProjectPhase2.MODE,
+                    OSProjectPhase2.THREADS, OSProjectPhase2.FRAMES, Geometry.describe());
+            System.out.printf("%d jobs in %.2f s%n", metrics.getJobs(), seconds);
+            System.out.printf("%14.0f jobs/s%n", metrics.getJobs() / seconds);
+            System.out.printf("%14.0f instructions/s%n", metrics.getInstructions() / seconds);
+            System.out.printf("turnaround p50 <= %.3f ms, p99 <= %.3f ms%n", metrics.getTurnaroundP50Millis(),
+                    metrics.getTurnaroundP99Millis());
+            System.out.printf("%d page faults, %d evictions, %d lines printed%n", metrics.getValidPageFaults(),
+                    metrics.getEvictions(), metrics.getLinesPrinted());
+            if (Tlb.ENABLED) {
+                System.out.printf("TLB: %d hits, %d misses, %d flushes%n", metrics.getTlbHits(),
+                        metrics.getTlbMisses(), metrics.getTlbFlushes());
+            }
+            for (String job : metrics.getSlowestJobs()) {
+                System.out.println("slowest: " + job);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
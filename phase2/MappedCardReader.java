@@ -0,0 +1,117 @@
+package phase2;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+// reads the cards of a deck straight out of a memory mapped file, a window of the
+// file is mapped at a time so decks larger than 2GB work too, and every card is
+// a view into the mapping, nothing is copied or decoded into Strings
+// offsets and line numbers are exact, so a job can be found again with seek()
+final class MappedCardReader implements CardReader {
+    // how much of the file is mapped at once
+    static final int WINDOW = 64 << 20;
+
+    private final FileChannel channel; // null when reading a buffer that is already mapped
+    private final long end; // deck offset just past the last byte
+    private ByteBuffer window;
+    private long windowStart; // deck offset of the first byte of the window
+    private long offset;
+    private long line;
+
+    // the whole deck in a file
+    MappedCardReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.end = channel.size();
+        map(0, WINDOW);
+    }
+
+    // a part of a deck that is already in memory, its first byte is at the given
+    // offset and line of the deck
+    MappedCardReader(ByteBuffer bytes, long offset, long line) {
+        this.channel = null;
+        this.end = offset + bytes.limit();
+        this.window = bytes;
+        this.windowStart = offset;
+        this.offset = offset;
+        this.line = line;
+    }
+
+    private void map(long from, long length) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(length, end - from));
+        windowStart = from;
+    }
+
+    @Override
+    public Card nextCard() throws IOException {
+        if (offset >= end) {
+            return null;
+        }
+
+        int pos = (int) (offset - windowStart);
+        int newline = indexOfNewline(pos);
+
+        // the card runs past the mapped window, map again from the card onwards
+        // with a window big enough to hold it
+        while (newline < 0 && windowStart + window.limit() < end) {
+            map(offset, Math.max(WINDOW, 2L * (window.limit() - pos)));
+            pos = 0;
+            newline = indexOfNewline(pos);
+        }
+
+        // the last card of the deck need not have a line end
+        int next = newline < 0 ? window.limit() : newline + 1;
+        int length = (newline < 0 ? window.limit() : newline) - pos;
+        if (length > 0 && window.get(pos + length - 1) == '\r') {
+            length--;
+        }
+
+        offset = windowStart + next;
+        line++;
+        return new Card(window, pos, length);
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < window.limit(); i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the bytes of the deck in [from, to), shared with the mapping when the
+    // window still covers them
+    @Override
+    public ByteBuffer slice(long from, long to) throws IOException {
+        if (from >= windowStart && to <= windowStart + window.limit()) {
+            return window.slice((int) (from - windowStart), (int) (to - from));
+        }
+        if (channel == null) {
+            throw new IOException("bytes " + from + ".." + to + " are outside of this part of the deck");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    @Override
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public long line() {
+        return line;
+    }
+
+    @Override
+    public void seek(long offset, long line) throws IOException {
+        if (offset < windowStart || offset > windowStart + window.limit()) {
+            if (channel == null || offset > end) {
+                throw new IOException("offset " + offset + " is outside of the deck");
+            }
+            map(offset, WINDOW);
+        }
+        this.offset = offset;
+        this.line = line;
+    }
+}
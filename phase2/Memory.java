@@ -0,0 +1,220 @@
+package phase2;
+
+import java.nio.*;
+import java.util.*;
+
+// main memory of the machine, one word at every address with the word's chars
+// packed 8 bits each and the first char in the high byte, so a load, store or
+// compare is a single access and GD/PD move whole blocks
+// where the words live is picked once for the run, -Dos.memory=heap|offheap
+//   heap     a long[] on the Java heap, the default
+//   offheap  direct buffers outside the heap, committed a chunk at a time the
+//            first time a word of the chunk is written, so a machine with
+//            millions of frames costs only the frames its jobs touch and adds
+//            nothing for the garbage collector to trace or copy, give it room
+//            with -XX:MaxDirectMemorySize
+// words that were never written read as 0 either way
+interface Memory {
+    int WORD_SIZE = Geometry.WORD_CHARS;
+
+    // a word of blanks
+    long BLANK = pack(" ".repeat(WORD_SIZE));
+
+    String KIND = System.getProperty("os.memory", "heap");
+
+    // memory of the given number of words, of the os.memory kind
+    static Memory of(int size) {
+        switch (KIND) {
+            case "heap":
+                return new Heap(size);
+            case "offheap":
+                return new OffHeap(size);
+            default:
+                throw new IllegalArgumentException("unknown memory " + KIND + ", use heap or offheap");
+        }
+    }
+
+    int size();
+
+    long read(int address);
+
+    void write(int address, long word);
+
+    // set every word in [from, to) to the same value
+    void fill(int from, int to, long word);
+
+    // the char at position i of the word at the given address
+    default char charAt(int address, int i) {
+        return charAt(read(address), i);
+    }
+
+    // overwrite a single char of a word, leaving the other chars as they were
+    default void setChar(int address, int i, char c) {
+        int shift = (WORD_SIZE - 1 - i) * 8;
+        write(address, (read(address) & ~(0xFFL << shift)) | ((long) (c & 0xFF) << shift));
+    }
+
+    // copy the first length chars of a card into memory starting at address,
+    // whole words are packed and stored at once, a trailing partial word only
+    // replaces the chars the card actually has
+    default void writeChars(int address, CharSequence card, int length) {
+        int full = length / WORD_SIZE;
+        for (int w = 0; w < full; w++) {
+            write(address + w, pack(card, w * WORD_SIZE));
+        }
+        for (int i = full * WORD_SIZE; i < length; i++) {
+            setChar(address + full, i - full * WORD_SIZE, card.charAt(i));
+        }
+    }
+
+    // unpack count words starting at address into dst
+    default void readChars(int address, int count, char[] dst) {
+        for (int w = 0; w < count; w++) {
+            long word = read(address + w);
+            for (int i = 0; i < WORD_SIZE; i++) {
+                dst[w * WORD_SIZE + i] = charAt(word, i);
+            }
+        }
+    }
+
+    static char charAt(long word, int i) {
+        return (char) ((word >>> ((WORD_SIZE - 1 - i) * 8)) & 0xFF);
+    }
+
+    // pack WORD_SIZE chars starting at from into a word
+    static long pack(CharSequence chars, int from) {
+        long word = 0;
+        for (int i = 0; i < WORD_SIZE; i++) {
+            word = (word << 8) | (chars.charAt(from + i) & 0xFF);
+        }
+        return word;
+    }
+
+    static long pack(CharSequence chars) {
+        return pack(chars, 0);
+    }
+
+    // the chars of a word, for printing
+    static String toString(long word) {
+        char[] chars = new char[WORD_SIZE];
+        for (int i = 0; i < WORD_SIZE; i++) {
+            chars[i] = charAt(word, i);
+        }
+        return new String(chars);
+    }
+
+    final class Heap implements Memory {
+        private final long[] words;
+
+        Heap(int size) {
+            words = new long[size];
+        }
+
+        @Override
+        public int size() {
+            return words.length;
+        }
+
+        @Override
+        public long read(int address) {
+            return words[address];
+        }
+
+        @Override
+        public void write(int address, long word) {
+            words[address] = word;
+        }
+
+        @Override
+        public void fill(int from, int to, long word) {
+            Arrays.fill(words, from, to, word);
+        }
+    }
+
+    // a word takes a byte a char, stored as an int, or a long when the words have
+    // more than four chars, chunks are 4096 words, or the memory when it is smaller
+    final class OffHeap implements Memory {
+        static final int CHUNK_SHIFT = 12;
+        static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+        static final int CHUNK_MASK = CHUNK_WORDS - 1;
+        static final boolean WIDE = WORD_SIZE > Integer.BYTES;
+        static final int BYTES_SHIFT = WIDE ? 3 : 2;
+
+        private final int size;
+
+        // null for a chunk that was never written or was filled with 0 as a whole
+        private final ByteBuffer[] chunks;
+
+        OffHeap(int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("memory cannot have a negative size: " + size);
+            }
+            this.size = size;
+            this.chunks = new ByteBuffer[(int) (((long) size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long read(int address) {
+            ByteBuffer chunk = chunks[Objects.checkIndex(address, size) >>> CHUNK_SHIFT];
+            if (chunk == null) {
+                return 0;
+            }
+            int at = (address & CHUNK_MASK) << BYTES_SHIFT;
+            return WIDE ? chunk.getLong(at) : chunk.getInt(at) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void write(int address, long word) {
+            put(commit(Objects.checkIndex(address, size) >>> CHUNK_SHIFT), address & CHUNK_MASK, word);
+        }
+
+        // a range of 0s is zeroed without committing anything, a chunk it covers
+        // as a whole is given back instead
+        @Override
+        public void fill(int from, int to, long word) {
+            Objects.checkFromToIndex(from, to, size);
+            while (from < to) {
+                int chunk = from >>> CHUNK_SHIFT;
+                int end = Math.min(to, (chunk + 1) << CHUNK_SHIFT);
+                if (word == 0 && (chunks[chunk] == null || end - from == chunkWords(chunk))) {
+                    chunks[chunk] = null;
+                } else {
+                    ByteBuffer words = commit(chunk);
+                    for (int w = from; w < end; w++) {
+                        put(words, w & CHUNK_MASK, word);
+                    }
+                }
+                from = end;
+            }
+        }
+
+        // the chunk, allocated the first time it is written, direct buffers start
+        // out zeroed, the last one only as large as the memory it holds
+        private ByteBuffer commit(int chunk) {
+            ByteBuffer words = chunks[chunk];
+            if (words == null) {
+                words = ByteBuffer.allocateDirect(chunkWords(chunk) << BYTES_SHIFT).order(ByteOrder.nativeOrder());
+                chunks[chunk] = words;
+            }
+            return words;
+        }
+
+        private static void put(ByteBuffer chunk, int index, long word) {
+            if (WIDE) {
+                chunk.putLong(index << BYTES_SHIFT, word);
+            } else {
+                chunk.putInt(index << BYTES_SHIFT, (int) word);
+            }
+        }
+
+        // words of memory in the chunk, the last one may be short
+        private int chunkWords(int chunk) {
+            return Math.min(CHUNK_WORDS, size - (chunk << CHUNK_SHIFT));
+        }
+    }
+}
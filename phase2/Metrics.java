@@ -0,0 +1,318 @@
+package phase2;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import javax.management.*;
+
+// the counts of every job of the deck added up, jobs on any thread add theirs
+// when they end, readable over JMX while the deck runs and written out as an
+// OpenMetrics text file at the end with -Dos.metrics=<file>
+// turnaround goes into a histogram that splits every power of two nanoseconds
+// into SUB_BUCKETS equal buckets, the way HdrHistogram does, so a percentile,
+// the upper bound of its bucket, is less than 1% over the real turnaround
+final class Metrics implements MetricsMBean {
+    // how many of the slowest jobs are kept by name, -Dos.metrics.slowest=N
+    static final int SLOWEST = Integer.getInteger("os.metrics.slowest", 10);
+
+    private static final String[] OPCODES = { "", "GD", "PD", "H", "LR", "SR", "CR", "BT", "INVALID" };
+
+    // the deck being run, every machine reports here
+    static final Metrics DECK = new Metrics();
+
+    private long jobs;
+    private final long[] instructions = new long[OPCODES.length];
+    private long validFaults;
+    private long invalidFaults;
+    private long evictions;
+    private long tlbHits;
+    private long tlbMisses;
+    private long tlbFlushes;
+    private long supervisorInterrupts;
+    private long programInterrupts;
+    private long timerInterrupts;
+    private long cardsRead;
+    private long linesPrinted;
+
+    // the buckets of a power of two, 2^SUB_BITS of them, and every turnaround of
+    // less than that many nanoseconds has a bucket of its own
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // bucket i counts turnarounds t with t - 1 between lowest(i) and highest(i),
+    // see bucket(), so the power of two buckets of the OpenMetrics histogram,
+    // t up to 2^k, are whole sets of them
+    private final long[] turnaround = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+    private long turnaroundNanos;
+
+    // the slowest jobs, the quickest of them at the head so it is the one dropped
+    private final PriorityQueue<JobMetrics> slowest = new PriorityQueue<>(
+            Comparator.comparingLong(job -> job.turnaround));
+
+    synchronized void add(JobMetrics job) {
+        jobs++;
+        for (int op = 0; op < instructions.length; op++) {
+            instructions[op] += job.instructions[op];
+        }
+        validFaults += job.validFaults;
+        invalidFaults += job.invalidFaults;
+        evictions += job.evictions;
+        tlbHits += job.tlbHits;
+        tlbMisses += job.tlbMisses;
+        tlbFlushes += job.tlbFlushes;
+        supervisorInterrupts += job.supervisorInterrupts;
+        programInterrupts += job.programInterrupts;
+        timerInterrupts += job.timerInterrupts;
+        cardsRead += job.cardsRead;
+        linesPrinted += job.linesPrinted;
+
+        turnaround[bucket(Math.max(0, job.turnaround - 1))]++;
+        turnaroundNanos += job.turnaround;
+
+        if (SLOWEST > 0) {
+            slowest.add(job);
+            if (slowest.size() > SLOWEST) {
+                slowest.poll();
+            }
+        }
+    }
+
+    // show the deck's counts over JMX, a second registration is left alone
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("phase2:type=Metrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Cannot register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // the bucket of a value, values below SUB_BUCKETS are their own bucket, above
+    // that the top SUB_BITS + 1 bits of the value pick the bucket of its power of two
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - SUB_BITS - 1 - Long.numberOfLeadingZeros(value);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    // the smallest and largest value of a bucket
+    private static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    private static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        return lowest(bucket) + (1L << (bucket / SUB_BUCKETS - 1)) - 1;
+    }
+
+    // the turnaround below which the given fraction of the jobs finished, in nanoseconds
+    private long percentile(double fraction) {
+        long wanted = (long) Math.ceil(fraction * jobs);
+        long seen = 0;
+        for (int i = 0; i < turnaround.length; i++) {
+            seen += turnaround[i];
+            if (seen >= wanted && seen > 0) {
+                return highest(i) + 1;
+            }
+        }
+        return 0;
+    }
+
+    // the histogram in power of two buckets, bucket k counting turnarounds of
+    // more than 2^(k-1) and up to 2^k nanoseconds
+    private long[] powersOfTwo() {
+        long[] powers = new long[64];
+        for (int i = 0; i < turnaround.length; i++) {
+            powers[64 - Long.numberOfLeadingZeros(lowest(i))] += turnaround[i];
+        }
+        return powers;
+    }
+
+    private List<JobMetrics> slowestFirst() {
+        List<JobMetrics> jobs = new ArrayList<>(slowest);
+        jobs.sort(Comparator.comparingLong((JobMetrics job) -> job.turnaround).reversed());
+        return jobs;
+    }
+
+    // the deck's counts as OpenMetrics text
+    synchronized String openMetrics() {
+        StringBuilder out = new StringBuilder();
+        counter(out, "os_jobs", "jobs run", null, jobs);
+
+        out.append("# TYPE os_instructions counter\n# HELP os_instructions instructions executed\n");
+        for (int op = 1; op < OPCODES.length; op++) {
+            sample(out, "os_instructions_total", "opcode=\"" + OPCODES[op] + "\"", instructions[op]);
+        }
+
+        out.append("# TYPE os_page_faults counter\n# HELP os_page_faults page faults\n");
+        sample(out, "os_page_faults_total", "kind=\"valid\"", validFaults);
+        sample(out, "os_page_faults_total", "kind=\"invalid\"", invalidFaults);
+        counter(out, "os_evictions", "pages swapped out to the drum", null, evictions);
+        counter(out, "os_tlb_hits", "TLB lookups that found the page", null, tlbHits);
+        counter(out, "os_tlb_misses", "TLB lookups that walked the page table", null, tlbMisses);
+        counter(out, "os_tlb_flushes", "flushes of the whole TLB", null, tlbFlushes);
+
+        out.append("# TYPE os_interrupts counter\n# HELP os_interrupts interrupts serviced\n");
+        sample(out, "os_interrupts_total", "kind=\"SI\"", supervisorInterrupts);
+        sample(out, "os_interrupts_total", "kind=\"PI\"", programInterrupts);
+        sample(out, "os_interrupts_total", "kind=\"TI\"", timerInterrupts);
+
+        out.append("# TYPE os_cards counter\n# HELP os_cards cards read by GD and lines printed by PD\n");
+        sample(out, "os_cards_total", "op=\"GD\"", cardsRead);
+        sample(out, "os_cards_total", "op=\"PD\"", linesPrinted);
+
+        // the buckets from the first one that has a job, cumulative as OpenMetrics wants them
+        out.append("# TYPE os_job_turnaround_seconds histogram\n"
+                + "# HELP os_job_turnaround_seconds wall clock time from loading a job to its end\n");
+        long[] turnaround = powersOfTwo();
+        int first = 0;
+        while (first < turnaround.length - 1 && turnaround[first] == 0) {
+            first++;
+        }
+        int last = turnaround.length - 1;
+        while (last > first && turnaround[last] == 0) {
+            last--;
+        }
+        long cumulative = 0;
+        for (int i = 0; i < first; i++) {
+            cumulative += turnaround[i];
+        }
+        for (int i = first; i <= last; i++) {
+            cumulative += turnaround[i];
+            out.append("os_job_turnaround_seconds_bucket{le=\"").append(seconds(1L << i)).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        out.append("os_job_turnaround_seconds_bucket{le=\"+Inf\"} ").append(jobs).append('\n');
+        out.append("os_job_turnaround_seconds_count ").append(jobs).append('\n');
+        out.append("os_job_turnaround_seconds_sum ").append(seconds(turnaroundNanos)).append('\n');
+
+        out.append("# TYPE os_slow_job_turnaround_seconds gauge\n"
+                + "# HELP os_slow_job_turnaround_seconds turnaround of the slowest jobs\n");
+        for (JobMetrics job : slowestFirst()) {
+            sample(out, "os_slow_job_turnaround_seconds",
+                    "job=\"" + job.jid + "\",sequence=\"" + job.sequence + "\",exit=\"" + job.exitCode + "\"",
+                    seconds(job.turnaround));
+        }
+
+        out.append("# EOF\n");
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, String labels, long value) {
+        out.append("# TYPE ").append(name).append(" counter\n# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        sample(out, name + "_total", labels, value);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    // write the OpenMetrics text to the file
+    void write(String file) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write(openMetrics());
+        }
+    }
+
+    public synchronized long getJobs() {
+        return jobs;
+    }
+
+    public synchronized long getInstructions() {
+        long total = 0;
+        for (long n : instructions) {
+            total += n;
+        }
+        return total;
+    }
+
+    public synchronized long[] getInstructionsByOpcode() {
+        return Arrays.copyOfRange(instructions, 1, instructions.length);
+    }
+
+    public String[] getOpcodes() {
+        return Arrays.copyOfRange(OPCODES, 1, OPCODES.length);
+    }
+
+    public synchronized long getValidPageFaults() {
+        return validFaults;
+    }
+
+    public synchronized long getInvalidPageFaults() {
+        return invalidFaults;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getTlbHits() {
+        return tlbHits;
+    }
+
+    public synchronized long getTlbMisses() {
+        return tlbMisses;
+    }
+
+    public synchronized long getTlbFlushes() {
+        return tlbFlushes;
+    }
+
+    public synchronized long getSupervisorInterrupts() {
+        return supervisorInterrupts;
+    }
+
+    public synchronized long getProgramInterrupts() {
+        return programInterrupts;
+    }
+
+    public synchronized long getTimerInterrupts() {
+        return timerInterrupts;
+    }
+
+    public synchronized long getCardsRead() {
+        return cardsRead;
+    }
+
+    public synchronized long getLinesPrinted() {
+        return linesPrinted;
+    }
+
+    public synchronized double getTurnaroundP50Millis() {
+        return percentile(0.50) / 1e6;
+    }
+
+    public synchronized double getTurnaroundP99Millis() {
+        return percentile(0.99) / 1e6;
+    }
+
+    public synchronized String[] getSlowestJobs() {
+        List<String> jobs = new ArrayList<>();
+        for (JobMetrics job : slowestFirst()) {
+            jobs.add(String.format("job %d (#%d) %.3f ms, %d instructions, exit %d", job.jid, job.sequence,
+                    job.turnaround / 1e6, job.instructions(), job.exitCode));
+        }
+        return jobs.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,44 @@
+package phase2;
+
+// what the deck's Metrics show over JMX, as phase2:type=Metrics
+public interface MetricsMBean {
+    long getJobs();
+
+    long getInstructions();
+
+    // instructions per opcode, named by getOpcodes()
+    long[] getInstructionsByOpcode();
+
+    String[] getOpcodes();
+
+    long getValidPageFaults();
+
+    long getInvalidPageFaults();
+
+    long getEvictions();
+
+    // 0 while the TLB is off, see os.tlb
+    long getTlbHits();
+
+    long getTlbMisses();
+
+    long getTlbFlushes();
+
+    long getSupervisorInterrupts();
+
+    long getProgramInterrupts();
+
+    long getTimerInterrupts();
+
+    long getCardsRead();
+
+    long getLinesPrinted();
+
+    // turnaround percentiles, from the histogram so rounded up by less than 1%
+    double getTurnaroundP50Millis();
+
+    double getTurnaroundP99Millis();
+
+    // the slowest jobs so far, slowest first
+    String[] getSlowestJobs();
+}
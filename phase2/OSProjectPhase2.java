@@ -1,813 +1,268 @@
+package phase2;
+
 import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.nio.charset.StandardCharsets;
 
 public class OSProjectPhase2 {
-    // Hardware Resources
-    static char memory[][] = new char[300][4];
-    static char instructionRegister[] = new char[4];
-    static char aRegister[] = new char[4];
-
-    static int instructionCounter;
-    static int SI;
-    static int M = 0;
-
-    // toggle register C
-    static boolean toggleRegister = false;
-
-    // a user defined structure for Process/Prg control board
-    static class PCB {
-        // job id, total time limit, total line limit
-        static int TTL = 0;
-        static int JID = 0;
-        static int TLL = 0;
-    }
-
-    // counter for faults
-    static int TTC = 0;
-    static int LLC = 0;
-
-    // interrupts
-    static int TI = 0;
-    static int PI = 0;
-
-    // has base address of page table
-    static int PTR;
-
-    // some helper data structures to keep track of random number generarted by
-    // Allocate() function and also its index to keep track of that
-    static int[] rndmGenerated = new int[100];
-    static int rndmGeneratedIndex;
-
-    // some more helper data structures
-    // a data structure to keep track of Page Table and an index to keep track of
-    // that
-    static int currKeyIndex;
-    static int[] key = new int[30];
-    static int[] value = new int[30];
-
-    // the generated address by the allocate() function
-    static int genAddress;
-
-    // for the error msg
-    static String ErrMsg = new String();
-    static int msgCode;
-
-    // the files to be read
-    static File outputFile = new File("output.txt");
-    static File inputFile = new File("input_phase2.txt");
-
-    public static BufferedReader input; // Input reader
-    public static BufferedWriter output; // Output writer
-
-    // other helper data structures
-    // keeps a track on which page we are in the memory
-    static int pageCount = 0;
-    static int Program_card_counter;
-    static int currentLine;
-
-    // to keep a track whether a job is has written anything in the file or not
-    static boolean isWritten = false;
-    static boolean terminate;
-
-    // Initialize memory and registers
-    public static void init() {
-        // clear the memory
-        for (int i = 0; i < 100; i++) {
-            for (int j = 0; j < 4; j++) {
-                memory[i][j] = ' ';
-            }
-        }
-
-        // clear the register and the instruction register
-        for (int i = 0; i < 4; i++) {
-            instructionRegister[i] = ' ';
-            aRegister[i] = ' ';
-        }
-
-        // reset the counter and interrupts
-        instructionCounter = 0;
-        toggleRegister = false;
-
-        // Reinitialized Counters for Time Limit and Line Limit
-        TTC = 0;
-        LLC = 0;
-
-        // Interruption codes initializing, systeminterrupts, program interrupt and time
-        // interrupt
-        SI = 0;
-        PI = 0;
-        TI = 0;
-
-        // initialise the helper variables
-        pageCount = 0;
-        Program_card_counter = 0;
-        rndmGeneratedIndex = -1;
-        currKeyIndex = -1;
-        terminate = false;
-    }
-
-    // random number generation between 0-30
-    public static int Allocate() {
-        Random rand = new Random();
-        int address;
-        boolean alreadyGenerated = false;
-
-        while (true) {
-            address = rand.nextInt(30); // Generate random number between 0 and 29
-            for (int i = 0; i <= rndmGeneratedIndex; i++) {
-                // check all addresses whether the current generated no is already generated or
-                // not
-                if (rndmGenerated[i] == address) {
-                    // if already generated, set alreadyGenerated to True
-                    alreadyGenerated = true;
-                    break;
+    // how many jobs of the deck run at the same time, -Dos.threads=N
+    static final int THREADS = Integer.getInteger("os.threads", Runtime.getRuntime().availableProcessors());
+
+    // what the jobs run on, -Dos.executor=platform is a pool of os.threads platform
+    // threads, virtual gives every job a virtual thread of its own (Java 21 or later)
+    // and lets as many jobs as os.staged be in flight at once
+    static final String EXECUTOR = System.getProperty("os.executor", "platform");
+
+    // frames are placed at random like on the real machine, -Dos.alloc=sequential
+    // hands them out lowest first instead, -Dos.seed=S makes the random placement
+    // the same on every run
+    static final boolean RANDOM_PLACEMENT = !"sequential".equals(System.getProperty("os.alloc"));
+    static final Long SEED = Long.getLong("os.seed");
+
+    // when the output file is flushed, -Dos.flush=job|deck|N (every N jobs)
+    static final String FLUSH = System.getProperty("os.flush", "job");
+
+    // -Dos.mode=parallel runs every job on a machine of its own on the thread pool,
+    // multiprogram keeps several jobs resident on one machine and time slices them
+    static final String MODE = System.getProperty("os.mode", "parallel");
+
+    // multiprogramming: the scheduling policy (rr, fcfs or sttf), the round robin
+    // time slice and how many ticks a GD or PD keeps a job blocked
+    static final String SCHEDULER = System.getProperty("os.scheduler", "rr");
+    static final int QUANTUM = Integer.getInteger("os.quantum", 4);
+    static final int IO_TICKS = Integer.getInteger("os.io.ticks", 10);
+
+    // how many jobs the input spooler stages ahead of the output, -Dos.staged=N
+    static final int STAGED = Integer.getInteger("os.staged", 64);
+
+    // how many jobs past the oldest unfinished one may run and hold their output
+    // until it is done, -Dos.window=N, os.staged by default
+    static final int WINDOW = Integer.getInteger("os.window", STAGED);
+
+    // demand paging: how many of the frames of memory a machine may use, all of
+    // them unless given, see Geometry for how many there are, the policy that
+    // picks the page to swap out when they are all taken and how many pages the
+    // drum they are swapped out to holds
+    static final int FRAMES = Integer.getInteger("os.frames", Geometry.FRAMES);
+    static final String REPLACEMENT = System.getProperty("os.replace", "fifo");
+    static final int DRUM_PAGES = Integer.getInteger("os.drum", 1024);
+
+    // where the deck's metrics are written as OpenMetrics text at the end of the
+    // run, -Dos.metrics=<file>, they can be read over JMX while it runs either way
+    static final String METRICS_FILE = System.getProperty("os.metrics");
+
+    // -Dos.checkpoint=<file> writes a deck checkpoint there every
+    // os.checkpoint.every jobs, a run that finds the file resumes from it and the
+    // file is removed once the whole deck is done
+    static final String CHECKPOINT = System.getProperty("os.checkpoint");
+    static final int CHECKPOINT_EVERY = Integer.getInteger("os.checkpoint.every", 100);
+
+    // the executor jobs run on, platform or virtual
+    static ExecutorService executor(String kind, int threads) {
+        switch (kind) {
+            case "platform":
+                return Executors.newFixedThreadPool(threads);
+            case "virtual":
+                // looked up at run time, so this still compiles and runs on older Javas
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (NoSuchMethodException e) {
+                    throw new UnsupportedOperationException(
+                            "virtual threads need Java 21 or later, this is Java " + Runtime.version().feature());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("cannot create a virtual thread executor", e);
                 }
-            }
-
-            // if already not generated, break out of the loop, else continue the loop to
-            // generate a new number
-            if (!alreadyGenerated) {
-                break;
-            } else {
-                // set alreadyGenerated to false, for next iteration
-                alreadyGenerated = false;
-            }
+            default:
+                throw new IllegalArgumentException("unknown executor " + kind + ", use platform or virtual");
         }
-
-        rndmGeneratedIndex++;
-        rndmGenerated[rndmGeneratedIndex] = address;
-
-        return address;
     }
 
-    // Print the current memory contents
-    private static void printMemory() {
-
-        System.out.println("Memory content:");
-
-        // now the size of the memory has become 300 words
-        for (int i = 0; i < 300; i++) {
-            System.out.print("M[" + i + "]: ");
-            for (int j = 0; j < 4; j++) {
-                System.out.print(memory[i][j]);
-            }
-            System.out.println();
-        }
-    }
-
-    // gets the actual address of the instruction from the page table in the memory
-    private static int getRealAddress(int instructionCounter) {
-        // check if instruction counter is a multiple of 10 if yes a new page has
-        // started
-        if (instructionCounter % 10 == 0 && instructionCounter != 0) {
-            pageCount++;
-        }
-
-        // check for out of bounds access
-        if (PTR + pageCount >= memory.length || PTR + pageCount < 0) {
-            throw new ArrayIndexOutOfBoundsException("Invalid page table access");
-        }
-
-        // get the frame number of the instruction from the memory
-        int frame = (memory[PTR + pageCount][2] - '0') * 10 + (memory[PTR + pageCount][3] - '0');
-
-        // address is (frame * 10) + offset
-        int address = frame * 10 + instructionCounter % 10;
-
-        // check for out of bounds access
-        if (address >= memory.length || address < 0) {
-            throw new ArrayIndexOutOfBoundsException("Invalid memory address");
-        }
-
-        // return the real address of the instruction
-        return address;
-    }
-
-    // convert logical address into physical address
-    // it means whenever there is an nstruction GD20, 20 is operand which is the
-    // logical address, we have to convert that into physical address
-    private static int AddressMap(int logicalAddress) throws IOException {
-
-        // Handle halt instruction separately
-        if (instructionRegister[0] == 'H' && instructionRegister[1] == ' ') {
-            return -1;
-        }
-
-        if (instructionRegister[0] == 'B' && instructionRegister[1] == 'T') {
-            return -1;
-        }
-
-        // check whether operand is number or not, if not raise the program interrupt,
-        // opcode error
-        // Validate operand digits
-        if (!Character.isDigit(instructionRegister[2]) || !Character.isDigit(instructionRegister[3])) {
-            PI = 2;
-            MOS();
-            return -1;
-        }
-
-        // get the frame number for the logical address by diving the logical address by
-        // frame size / page size which is 10
-        int frameNo = logicalAddress / 10;
-
-        // Check if frame exists in page table
-        for (int i = 0; i <= currKeyIndex; i++) {
-            if (key[i] == frameNo * 10) {
-                return (value[i] * 10) + (logicalAddress % 10);
-            }
-        }
-
-        // Handle GD and SR instructions for valid page faults
-        if ((instructionRegister[0] == 'G' && instructionRegister[1] == 'D') ||
-                (instructionRegister[0] == 'S' && instructionRegister[1] == 'R')) {
-
-            if (currKeyIndex >= key.length - 1) {
-                System.out.println("Page table full");
-                terminate(6);
-                return -1;
-            }
-
-            // Allocate new frame
-            currKeyIndex++;
-            key[currKeyIndex] = frameNo * 10;
-            value[currKeyIndex] = Allocate();
-
-            // Update page table
-            int realAddress = value[currKeyIndex];
-            memory[PTR + Program_card_counter][0] = '1';
-            memory[PTR + Program_card_counter][2] = (char) (realAddress / 10 + '0');
-            memory[PTR + Program_card_counter][3] = (char) (realAddress % 10 + '0');
-            Program_card_counter++;
-
-            PI = 0;
-            return realAddress * 10 + (logicalAddress % 10);
-        }
-
-        // INvalid Page fault for other instructions than GD and SR
-        PI = 3;
-        MOS();
-        return -1;
-    }
-
-    // Modified read method to prevent recursion
-    private static void read() throws IOException {
-        // check if theres a prg interrupt already
-        if (PI != 0)
-            return; // Don't proceed if there's a pending interrupt
-
-        // get the operand and the frameNo
-        int operand = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-        int frameNo = operand / 10;
-
-        // page table is a key value aarray pair, which is indexed by currKeyIndex
-        // Check if frame exists in page table
-        boolean frameExists = false;
-        for (int i = 0; i <= currKeyIndex; i++) {
-            if (key[i] == frameNo * 10) {
-                frameExists = true;
-                break;
-            }
-        }
-
-        // If frame doesn't exist, allocate it
-        // if (!frameExists) {
-        // PI = 3; // Set page fault
-        // MOS();
-        // return;
-        // }
-
-        // if the frame doesnt exist allocate it in the memory and the base address to page table
-        if (!frameExists) {
-            currKeyIndex++;
-            key[currKeyIndex] = frameNo * 10;
-            value[currKeyIndex] = Allocate();
-
-            memory[PTR + Program_card_counter][0] = '1';
-            memory[PTR + Program_card_counter][2] = (char) (value[currKeyIndex] / 10 +
-                    '0');
-            memory[PTR + Program_card_counter][3] = (char) (value[currKeyIndex] % 10 +
-                    '0');
-            Program_card_counter++;
-        }
-
-        // Get real address of the instruction
-        int row = -1;
-        for (int i = 0; i <= currKeyIndex; i++) {
-            if (key[i] == frameNo * 10) {
-                row = value[i] * 10 + (operand % 10);
-                break;
-            }
-        }
-
-        if (row == -1)
-            return; // Should not happen after above checks
-
-        int col = 0;
-        String buffer = input.readLine();
-        currentLine += (buffer != null) ? buffer.length() + 1 : 0;
-
-        if (buffer == null || buffer.startsWith("$END")) {
-            terminate(1);
-            return;
-        }
-
-        // Skip control cards
-        if (buffer.startsWith("$")) {
-            return;
-        }
-
-        // Write to memory
-        for (int i = 0; i < buffer.length() && i < 40; i++) {
-            memory[row][col] = buffer.charAt(i);
-            col++;
-            if (col == 4) {
-                row++;
-                col = 0;
-            }
-        }
-
-        SI = 0;
-    }
-
-    // In your write() method, modify how you write to the file:
-    // Modify the write() method
-    private static void write() throws IOException {
-        // since there was a PD instruction, increment the line limit counter
-        LLC++;
-        if (LLC > PCB.TLL) {
-            terminate(2);
-            return;
-        }
-
+    // true when this Java can start virtual threads
+    static boolean virtualThreads() {
         try {
-            // is Written checks whether the current job has a first line written to output.txt or not
-            if (!isWritten) {
-                isWritten = true;
-            } else {
-                output.write("\n");
-            }
-
-            // get address
-            int operand = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-            int row = AddressMap(operand);
-
-            if (row < 0 || row >= memory.length) {
-                System.out.println("Invalid memory access in write(): " + row);
-                terminate(6);
-                return;
-            }
-
-            // Create a string builder for the line
-            StringBuilder line = new StringBuilder();
-
-            // Add memory contents
-            for (int i = row; i < row + 10 && i < memory.length; i++) {
-                for (int j = 0; j < 4; j++) {
-                    // Only append printable characters or space
-                    char c = memory[i][j];
-                    if (Character.isLetterOrDigit(c) || c == ' ' || c == '*') {
-                        line.append(c);
-                    } else {
-                        line.append(' ');
-                    }
-                }
-            }
-
-            // Pad with spaces to maintain formatting
-            while (line.length() < 40) {
-                line.append(' ');
-            }
-
-            // write the contents to the output file and flush it to avoid garbage value
-            output.write(line.toString());
-            output.flush();
-        } catch (IOException e) {
-            System.out.println("Error writing to output: " + e.getMessage());
-            throw e;
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
         }
-
-        SI = 0;
     }
 
-    // the terminate function
-    static void terminate(int msgCode) {
-        // makes the terminate flag as true,since there was an interrupt or H command to stop the currnet job
-        terminate = true;
+    // run the deck as a pipeline of three stages, the input spooler reads and
+    // stages jobs on its own thread, the executor runs each on a machine of its
+    // own and hands its output to the reorder window as it finishes, in whatever
+    // order, and this thread waits for the jobs in deck order and releases their
+    // output from the window to the output spooler, first is the sequence number
+    // of the job the input is at
+    static void runBatch(CardReader input, int first, OutputSpooler output, String executor, int threads)
+            throws IOException {
+        ExecutorService pool = executor(executor, threads);
+        ReorderWindow window = new ReorderWindow(output, first, WINDOW);
+        InputSpooler jobs = new InputSpooler(input, first, job -> {
+            window.reserve(job.sequence);
+            return pool.submit(() -> {
+                window.complete(job.sequence, job.run(SEED), job.next());
+                return null;
+            });
+        }, STAGED);
         try {
-            // a string to store the error message
-            StringBuilder errMsg = new StringBuilder();
-            errMsg.append("\n");
-            errMsg.append(String.format("JOB ID   : %4d", PCB.JID));
-            errMsg.append("\n");
-
-            // check the msgCode for the error that has occcured
-            switch (msgCode) {
-                case 0:
-                    errMsg.append(" NO ERROR");
-                    break;
-                case 1:
-                    errMsg.append(" OUT OF DATA");
-                    break;
-                case 2:
-                    errMsg.append(" LINE LIMIT EXCEEDED");
-                    break;
-                case 3:
-                    errMsg.append(" TIME LIMIT EXCEEDED");
-                    break;
-                case 4:
-                    errMsg.append(" OPERATION CODE ERROR");
-                    break;
-                case 5:
-                    errMsg.append(" OPERAND ERROR");
-                    break;
-                case 6:
-                    errMsg.append(" INVALID PAGE FAULT");
-                    break;
-                case 7:
-                    errMsg.append(" TIME LIMIT EXCEEDED And OPERATION CODE ERROR");
-                    break;
-                case 8:
-                    errMsg.append(" TIME LIMIT EXCEEDED And OPERAND ERROR");
-                    break;
+            Job job;
+            while ((job = jobs.next()) != null) {
+                job.result.get();
+                window.release();
             }
-
-            // construct the error msg and write to the file
-            errMsg.append("\n");
-            errMsg.append(String.format("IC       : %d", instructionCounter));
-            errMsg.append("\n");
-            errMsg.append("IR       : ");
-            for (int i = 0; i < 4; i++) {
-                errMsg.append(instructionRegister[i]);
-            }
-            errMsg.append("\n");
-            errMsg.append(String.format("TTC      : %d", TTC));
-            errMsg.append("\n");
-            errMsg.append(String.format("LLC      : %d", LLC));
-            errMsg.append("\n\n");
-
-            output.write(errMsg.toString());
-            output.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("batch interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("job failed", e.getCause());
+        } finally {
+            jobs.close();
+            pool.shutdown();
         }
     }
 
-    // execute user program function, important ahe lmao
-    static void executeUserProgram() throws IOException {
-        // make a check whether terminate is false, then only continue
-        while (!terminate) {
-            // Check Time Limit before executing instruction
-            if (TTC >= PCB.TTL) {
-                TI = 2;
-                MOS();
-                break;
-            }
-
-            // Get real address
-            int address;
-            try {
-                address = getRealAddress(instructionCounter);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                PI = 3; // Invalid Page Fault
-                MOS();
-                continue;
-            }
-
-            // Load instruction register
-            for (int i = 0; i < 4; i++) {
-                instructionRegister[i] = memory[address][i];
-            }
-
-            // Validate operation code, check for opcode error
-            String opcode = "" + instructionRegister[0] + instructionRegister[1];
-            if (!(opcode.equals("GD") || opcode.equals("PD") || opcode.equals("H ") ||
-                    opcode.equals("LR") || opcode.equals("SR") || opcode.equals("CR") ||
-                    opcode.equals("BT"))) {
-                PI = 1;
-                MOS();
-                continue;
+    // run the jobs together on one multiprogrammed machine, they finish in any
+    // order but the reorder window still spools their output in deck order, jobs
+    // are read off the deck as memory frees up and only admitted while the window
+    // has room for them, so only the resident ones are held
+    static void runMultiprogrammed(CardReader input, int first, OutputSpooler output) throws IOException {
+        Random random = SEED == null ? new Random() : new Random(SEED);
+        FrameAllocator frames = new FrameAllocator(FRAMES, RANDOM_PLACEMENT ? random : null);
+        VirtualMachine vm = new VirtualMachine(null, null, frames);
+
+        // jobs read but not finished yet
+        ReorderWindow window = new ReorderWindow(output, first, WINDOW);
+        Map<Integer, Job> read = new HashMap<>();
+        int[] nextToRead = { first };
+        Kernel.Jobs jobs = () -> {
+            Job job = Job.next(input, nextToRead[0]);
+            if (job != null) {
+                read.put(job.sequence, job);
+                nextToRead[0]++;
             }
-
-            // Validate operand for numeric instructions and operand error
-            if (opcode.equals("SR") || opcode.equals("LR") || opcode.equals("CR") || opcode.equals("BT")) {
-                if (!Character.isDigit(instructionRegister[2]) ||
-                        !Character.isDigit(instructionRegister[3])) {
-                    PI = 2;
-                    MOS();
-                    continue;
-                }
-            }
-
-            // Increment IC before execution
-            instructionCounter++;
-
-            // Increment TTC after validation but before execution, since there was an instruction 
-            TTC++;
-
-            // examine which instruction was it and execute
-            switch (opcode) {
-                case "LR":
-                    loadRegister();
-                    break;
-                case "SR":
-                    storeRegister();
-                    break;
-                case "CR":
-                    compareRegister();
-                    break;
-                case "BT":
-                    branchOnTrue();
-                    break;
-                case "GD":
-                    SI = 1;
-                    MOS();
-                    break;
-                case "PD":
-                    SI = 2;
-                    MOS();
-                    break;
-                case "H ":
-                    SI = 3;
-                    MOS();
-                    break;
-            }
-        }
+            return job;
+        };
+        new Kernel(vm, Scheduler.of(SCHEDULER, QUANTUM), IO_TICKS).run(jobs, window::admits,
+                (sequence, result) -> {
+                    window.complete(sequence, result, read.remove(sequence).next());
+                    window.release();
+                });
     }
 
-    // the daddy function 
-    static void MOS() throws IOException {
-        
-        // case1: there is no time interrupt and program interrupt
-        if (TI == 0 && PI == 0) {
-            switch (SI) {
-                case 1: // Read
-                    read();
-                    break;
-                case 2: // Write
-                    if (LLC >= PCB.TLL) {
-                        terminate(2);
-                        return;
-                    }
-                    write();
-                    break;
-                case 3: // Terminate
-                    terminate(0);
-                    break;
-            }
-        } 
-        
-        // time interrupt with other interrupts
-        else if (TI == 2) {
-            if (PI == 1) {
-                terminate(7);
-            } else if (PI == 2) {
-                terminate(8);
-            } else if (SI == 2) {
-                write();
-                terminate(3);
-            } else {
-                terminate(3);
-            }
-        } 
-        
-        // program interrupt
-        else if (PI != 0) {
-            switch (PI) {
-                case 1:
-                    terminate(4);
-                    break;
-                case 2:
-                    terminate(5);
-                    break;
-                case 3:
-                    if (SI == 1) {
-                        // Allocate frame and update page table
-                        int frameNo = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-                        frameNo /= 10;
-                        currKeyIndex++;
-                        key[currKeyIndex] = frameNo * 10;
-                        value[currKeyIndex] = Allocate();
-
-                        memory[PTR + Program_card_counter][0] = '1';
-                        memory[PTR + Program_card_counter][2] = (char) (value[currKeyIndex] / 10 + '0');
-                        memory[PTR + Program_card_counter][3] = (char) (value[currKeyIndex] % 10 + '0');
-                        Program_card_counter++;
-
-                        PI = 0;
-                        instructionCounter--; // Retry the instruction
-                    } else {
-                        terminate(6);
-                    }
-                    break;
+    // run the deck in the mode of os.mode, from the job numbered first on
+    static void run(CardReader deck, int first, OutputSpooler output) throws IOException {
+        if (MODE.equals("multiprogram")) {
+            runMultiprogrammed(deck, first, output);
+        } else {
+            String executor = EXECUTOR;
+            if (executor.equals("virtual") && !virtualThreads()) {
+                System.out.println("virtual threads need Java 21 or later, running on platform threads");
+                executor = "platform";
             }
+            runBatch(deck, first, output, executor, THREADS);
         }
     }
 
-    // the simulation function, which is called in the executeUserProgram function
-    private static void simulation() {
-
-        // increase the total time counter, as instruction is being executed and check
-        // if TTC is more than total time limit,if yes then make a time interrupt
-        TTC++;
-
-        if (TTC > PCB.TTL) {
-
-            // set the timer interrupt
-            TI = 2;
-
+    // run a deck as it streams in from the channel and write the output to the
+    // sink, nothing is staged in files, memory holds the jobs in flight and no more
+    static void stream(ReadableByteChannel deck, Writer sink) throws IOException {
+        try (OutputSpooler spooler = new OutputSpooler(sink, FLUSH)) {
+            run(new StreamCardReader(deck), 0, spooler);
         }
-
     }
 
-    // the change from the phase 1 to phase 2 , is first you have to map the real
-    // address in the instruction functions like LR, SR, CR, BT
-    // Load data from memory into the accumulator register R
-    // Modify the loadRegister method to handle invalid addresses:
-    private static void loadRegister() throws IOException {
-        int address = AddressMap((instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0'));
+    // chaloa bhai program ko
+    // java phase2.OSProjectPhase2 [deck] [output], the deck is input_phase2.txt and
+    // the output output.txt unless given, - streams the deck from stdin or the
+    // output to stdout
+    public static void main(String[] args) {
+        String deckName = args.length > 0 ? args[0] : "input_phase2.txt";
+        String outputName = args.length > 1 ? args[1] : "output.txt";
 
-        if (address == -1) {
-            return; // Return if address mapping failed
+        // with the output on stdout the messages go to stderr, out of its way
+        PrintStream stdout = System.out;
+        if (outputName.equals("-")) {
+            System.setOut(System.err);
         }
 
-        if (address >= 300) {
-            System.out.println("Address out of bounds during load.");
-            terminate(6);
+        if (Geometry.PROBLEM != null) {
+            System.out.println(Geometry.PROBLEM);
             return;
         }
 
-        for (int i = 0; i < 4; i++) {
-            aRegister[i] = memory[address][i];
-        }
-        System.out.println("Loaded into R from memory[" + address + "]: " + String.valueOf(aRegister));
-    }
-
-    // Store data from accumulator register R into memory
-    private static void storeRegister() throws IOException {
-
-        // get the real address to work with
-        int address = AddressMap((instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0'));
-
-        if (address >= 300) {
-            System.out.println("Address out of bounds during store.");
+        // a job needs a frame for its page table and one for the page it is using
+        if (FRAMES < 2 || FRAMES > Geometry.FRAMES) {
+            System.out.println("os.frames must be between 2 and " + Geometry.FRAMES + ": " + FRAMES);
             return;
         }
-        for (int i = 0; i < 4; i++) {
-            memory[address][i] = aRegister[i]; // Store R data into memory
-        }
-        System.out.println("Stored R into memory[" + address + "]: " + String.valueOf(aRegister));
-    }
-
-    // Compare contents of register R with memory
-    private static void compareRegister() throws IOException {
-
-        // get the real address to work with
-        int address = AddressMap((instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0'));
-
-        if (address >= 300) {
-            System.out.println("Address out of bounds during compare.");
+        if (WINDOW < 1) {
+            System.out.println("os.window must be 1 or more jobs: " + WINDOW);
             return;
         }
-        toggleRegister = true; // Assume equality
-        for (int i = 0; i < 4; i++) {
-            if (aRegister[i] != memory[address][i]) {
-                toggleRegister = false; // Set false if any byte mismatches
-                break;
-            }
-        }
-        System.out.println("Compared R with memory[" + address + "], toggleRegister = " + toggleRegister);
-    }
 
-    // Branch to memory address if toggle register C is true
-    // jump to the frame number mentioned in the operand
-    private static void branchOnTrue() {
-        if (toggleRegister) {
-            int address = (instructionRegister[2] - '0') * 10 + (instructionRegister[3] - '0');
-            if (address >= 300) {
-                System.out.println("Address out of bounds during branch.");
-                return;
-            }
-            instructionCounter = address; // Set instruction counter to branch address
-            System.out.println("Branching to address: " + address);
-        } else {
-            System.out.println("Branch not taken.");
-        }
-    }
-
-    // Start Execution function
-    static void startExecution() throws IOException {
-        // set the instruction counter to 0
-        instructionCounter = 0;
+        Metrics.DECK.register();
 
-        // calling executeUserProgram
-        executeUserProgram();
-    }
-
-    // the load function, chalo load karo bhaisab
-    private static void load() {
+        FileChannel input = null;
+        FileChannel file = null;
+        Writer output = null;
         try {
+            CardReader deck;
+            if (deckName.equals("-")) {
+                deck = new StreamCardReader(System.in);
+            } else {
+                input = FileChannel.open(Paths.get(deckName), StandardOpenOption.READ);
+                deck = new MappedCardReader(input);
+            }
 
-            // take the current line in the buffer
-            String buffer;
-            while ((buffer = input.readLine()) != null) {
-                // In case the first four letters are $AMJ
-                if (buffer.startsWith("$AMJ")) {
-                    // allocate PTR to a random number
-                    PTR = Allocate() * 10;
-
-                    // new job found now initialise the components
-                    init();
-
-                    // create and intitialise the PCB
-                    PCB.JID = Integer.parseInt(buffer.substring(4, 8));
-                    PCB.TTL = Integer.parseInt(buffer.substring(8, 12));
-                    PCB.TLL = Integer.parseInt(buffer.substring(12));
-
-                    // initialise the page table
-                    for (int i = PTR; i < PTR + 10; i++) {
-                        memory[i][0] = '0';
-                        memory[i][1] = '*';
-                        memory[i][2] = '*';
-                        memory[i][3] = '*';
-                    }
-
-                    System.out.println("AMJ found!");
-                    System.out.println("Job Id : " + PCB.JID);
-                    System.out.println("Time Limit : " + PCB.TTL);
-                    System.out.println("Line Limit : " + PCB.TLL);
-
-                    // Read next line (program cards)
-                    buffer = input.readLine();
-
-                    // Process program cards until $DTA
-                    while (buffer != null && !buffer.startsWith("$DTA")) {
-                        // take a temp variable to store program's base address
-                        int prgCardFrame = Allocate();
-                        int prgCardAddress = prgCardFrame * 10;
-
-                        // Update page table
-                        memory[PTR + Program_card_counter][0] = '1';
-                        memory[PTR + Program_card_counter][2] = (char) (prgCardFrame / 10 + '0');
-                        memory[PTR + Program_card_counter][3] = (char) (prgCardFrame % 10 + '0');
-
-                        Program_card_counter++;
-
-                        // Load instructions into memory
-                        int col = 0;
-                        for (int i = 0; i < buffer.length(); i++) {
-                            if (buffer.charAt(i) == ' ') {
-                                continue;
-                            }
-
-                            memory[prgCardAddress][col] = buffer.charAt(i);
-                            col++;
-
-                            if (col == 4) {
-                                prgCardAddress++;
-                                col = 0;
-                            }
-                        }
-
-                        buffer = input.readLine();
-                    }
-
-                    // Start execution when $DTA is found
-                    if (buffer != null && buffer.startsWith("$DTA")) {
-                        startExecution();
-                    }
-
-                    // Skip data section until $END
-                    while (buffer != null && !buffer.startsWith("$END")) {
-                        buffer = input.readLine();
-                        // keep a track on which line number we are on
-                        currentLine += (buffer != null) ? buffer.length() + 1 : 0;
-                    }
-
-                    if (buffer != null && buffer.startsWith("$END")) {
-                        printMemory();
-                        System.out.println(buffer);
-                        System.out.println("_____________________END OF JOB_____________________");
-
-                        // Reset isWritten flag for next job
-                        isWritten = false;
+            // carry on from the checkpoint of a run that did not finish, the output
+            // it wrote after the checkpoint is cut off, those jobs run again
+            Path checkpoint = CHECKPOINT == null ? null : Paths.get(CHECKPOINT);
+            if (checkpoint != null && (deckName.equals("-") || outputName.equals("-"))) {
+                System.out.println("checkpoints need the deck and the output in files, os.checkpoint is ignored");
+                checkpoint = null;
+            }
+            Checkpoint resume = checkpoint == null ? null : Checkpoint.read(checkpoint);
+            long position = 0;
+            if (outputName.equals("-")) {
+                output = new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+            } else {
+                file = FileChannel.open(Paths.get(outputName), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (resume != null) {
+                    // output the checkpoint counts on that never reached the disk
+                    // cannot be made up for, the deck has to run from the top
+                    if (file.size() < resume.outputBytes) {
+                        throw new IOException("the output has " + file.size() + " bytes, the checkpoint "
+                                + checkpoint + " needs " + resume.outputBytes);
                     }
+                    System.out.println("Resuming at job " + resume.sequence + ", line " + (resume.line + 1)
+                            + " of the deck");
+                    deck.seek(resume.offset, resume.line);
+                    file.truncate(resume.outputBytes);
+                    file.position(resume.outputBytes);
+                } else {
+                    file.truncate(0);
                 }
+                position = file.position();
+                output = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(file),
+                        StandardCharsets.UTF_8));
             }
+            int first = resume == null ? 0 : resume.sequence;
 
-        } catch (Exception exception) {
-            System.out.println("load(): cannot read the input file:");
-            exception.printStackTrace();
-        }
-    }
+            try (OutputSpooler spooler = new OutputSpooler(output, file, FLUSH, checkpoint, CHECKPOINT_EVERY,
+                    position)) {
+                run(deck, first, spooler);
+            }
 
-    // chaloa bhai program ko
-    public static void main(String[] args) {
-        try {
-            input = new BufferedReader(new FileReader("input_phase2.txt"));
-            output = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream("output.txt"), StandardCharsets.UTF_8));
-            load(); // Load the jobs from input
+            // the whole deck is done, a later run starts from the top again
+            if (checkpoint != null) {
+                Files.deleteIfExists(checkpoint);
+            }
+            if (METRICS_FILE != null) {
+                Metrics.DECK.write(METRICS_FILE);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -815,7 +270,6 @@ public class OSProjectPhase2 {
                 if (input != null)
                     input.close();
                 if (output != null) {
-                    output.flush();
                     output.close();
                 }
             } catch (IOException e) {
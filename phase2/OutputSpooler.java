@@ -0,0 +1,173 @@
+package phase2;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// spools finished jobs to the output file on a writer thread of its own, so a
+// machine never waits on the disk, a job's PD lines and termination block are
+// handed over as one piece and whatever has piled up is written in one go
+// how often the output is flushed is the durability policy:
+//   job    after every job
+//   N      after every N jobs
+//   deck   only once the whole deck is done
+// with a checkpoint file, every checkpointEvery jobs the output is flushed and
+// forced to the disk and a deck checkpoint of where the batch can carry on from
+// is written after it
+final class OutputSpooler implements Closeable {
+    // a job's output and the place in the deck after it
+    private static final class Spooled {
+        final String output;
+        final Checkpoint next;
+
+        Spooled(String output, Checkpoint next) {
+            this.output = output;
+            this.next = next;
+        }
+    }
+
+    // marks the end of the deck on the queue
+    private static final Spooled END = new Spooled(null, null);
+
+    private final Writer sink;
+    private final FileChannel file;
+    private final int flushEvery;
+    private final Path checkpoint;
+    private final int checkpointEvery;
+    private final BlockingQueue<Spooled> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile IOException failure;
+
+    // bytes of output in the file so far, counting what was there before a resume
+    private long position;
+
+    // policy is "job", "deck" or a number of jobs
+    OutputSpooler(Writer sink, String policy) {
+        this(sink, null, policy, null, 0, 0);
+    }
+
+    // file is the output file sink writes to, position is how many bytes it
+    // already has
+    OutputSpooler(Writer sink, FileChannel file, String policy, Path checkpoint, int checkpointEvery,
+            long position) {
+        if (checkpoint != null && checkpointEvery < 1) {
+            throw new IllegalArgumentException("checkpoints must be every 1 or more jobs: " + checkpointEvery);
+        }
+        if (checkpoint != null && file == null) {
+            throw new IllegalArgumentException("checkpoints need the output in a file");
+        }
+        this.sink = sink;
+        this.file = file;
+        this.flushEvery = parsePolicy(policy);
+        this.checkpoint = checkpoint;
+        this.checkpointEvery = checkpointEvery;
+        this.position = position;
+        this.writer = new Thread(this::drain, "output-spooler");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // 0 means flush only at the end of the deck
+    static int parsePolicy(String policy) {
+        switch (policy) {
+            case "job":
+                return 1;
+            case "deck":
+                return 0;
+            default:
+                int n = Integer.parseInt(policy);
+                if (n < 1) {
+                    throw new IllegalArgumentException("flush policy must be job, deck or a positive number: " + policy);
+                }
+                return n;
+        }
+    }
+
+    // hand over everything one job wrote, jobs must be committed in deck order
+    void commit(String jobOutput) throws IOException {
+        commit(jobOutput, null);
+    }
+
+    // the same, next is where the deck carries on after the job
+    void commit(String jobOutput, Checkpoint next) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        queue.add(new Spooled(jobOutput, next));
+    }
+
+    private void drain() {
+        List<Spooled> batch = new ArrayList<>();
+        int unflushed = 0;
+        int uncheckpointed = 0;
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                for (Spooled job : batch) {
+                    if (job == END) {
+                        sink.flush();
+                        return;
+                    }
+                    sink.write(job.output);
+                    position += utf8Length(job.output);
+                    unflushed++;
+                    uncheckpointed++;
+                    if (flushEvery > 0 && unflushed >= flushEvery) {
+                        sink.flush();
+                        unflushed = 0;
+                    }
+
+                    // the checkpoint may only point past output that is on the disk,
+                    // flushing only hands it to the OS, which may lose it in a crash
+                    if (checkpoint != null && job.next != null && uncheckpointed >= checkpointEvery) {
+                        sink.flush();
+                        file.force(false);
+                        unflushed = 0;
+                        job.next.withOutput(position).write(checkpoint);
+                        uncheckpointed = 0;
+                    }
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("output spooler interrupted");
+        }
+    }
+
+    // bytes the output takes in the file, which is written as UTF-8
+    static long utf8Length(String output) {
+        long bytes = output.length();
+        for (int i = 0; i < output.length(); i++) {
+            char c = output.charAt(i);
+            if (Character.isSurrogate(c)) {
+                bytes++;
+            } else if (c >= 0x800) {
+                bytes += 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    // write out whatever is still queued and wait for the writer to finish
+    @Override
+    public void close() throws IOException {
+        queue.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing the output spooler");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package phase2;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+// checks the machine against golden output, run with
+//   java -cp <classes> phase2.Regression [dir...]
+// every input_<name>.txt under the directories (the current one by default) that
+// has an expected_output_<name>.txt next to it is a case, the cases run in
+// parallel on os.threads threads, each job of a deck on a fresh machine, and its
+// output is compared line by line with the expected file while the deck runs,
+// nothing is held but the job being compared
+// the first line that differs is reported with the job it belongs to and the
+// IC and IR the job ended with, frames are placed with os.seed, 0 unless given,
+// so a case cannot pass or fail by where its pages happened to land
+// an options_<name>.properties next to a case may set os.frames for it alone, so
+// a case can page through a small memory while the rest run on all of it, the
+// other options are the same for every case of a run
+// the exit status is 1 when any case fails
+public class Regression {
+    static final long SEED = OSProjectPhase2.SEED == null ? 0 : OSProjectPhase2.SEED;
+
+    // a deck and the output it should give
+    static final class Case {
+        final String name;
+        final Path deck;
+        final Path expected;
+
+        // frames its machines may use
+        final int frames;
+
+        Case(String name, Path deck, Path expected, int frames) {
+            this.name = name;
+            this.deck = deck;
+            this.expected = expected;
+            this.frames = frames;
+        }
+    }
+
+    // every case under the directory
+    static List<Case> find(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            List<Case> cases = new ArrayList<>();
+            for (Path deck : files.sorted().collect(Collectors.toList())) {
+                String file = deck.getFileName().toString();
+                if (!file.startsWith("input_") || !file.endsWith(".txt")) {
+                    continue;
+                }
+                String name = file.substring("input_".length(), file.length() - ".txt".length());
+                Path expected = deck.resolveSibling("expected_output_" + name + ".txt");
+                if (Files.isRegularFile(expected)) {
+                    cases.add(new Case(dir.relativize(deck.getParent()).resolve(name).toString(), deck, expected,
+                            frames(deck.resolveSibling("options_" + name + ".properties"))));
+                }
+            }
+            return cases;
+        }
+    }
+
+    // os.frames of the options file, or of the run when there is none
+    static int frames(Path options) throws IOException {
+        if (!Files.isRegularFile(options)) {
+            return OSProjectPhase2.FRAMES;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(options, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.equals("os.frames")) {
+                throw new IllegalArgumentException(options + ": only os.frames can be set for a case: " + key);
+            }
+        }
+        int frames = Integer.parseInt(properties.getProperty("os.frames", Integer.toString(OSProjectPhase2.FRAMES))
+                .trim());
+        if (frames < 2 || frames > Geometry.FRAMES) {
+            throw new IllegalArgumentException(options + ": os.frames must be between 2 and " + Geometry.FRAMES
+                    + ": " + frames);
+        }
+        return frames;
+    }
+
+    // run the case, null when its output is what was expected, otherwise where it
+    // first differs
+    static String check(Case test) throws IOException {
+        try (FileChannel channel = FileChannel.open(test.deck, StandardOpenOption.READ);
+                BufferedReader expected = Files.newBufferedReader(test.expected, StandardCharsets.UTF_8)) {
+            MappedCardReader deck = new MappedCardReader(channel);
+            long line = 0;
+
+            // the end of the output so far when it did not end its line, and the
+            // machine of the last job for the report
+            String partial = "";
+            VirtualMachine vm = null;
+            int sequence = 0;
+            Job job;
+            while ((job = Job.next(deck, sequence)) != null) {
+                StringWriter result = new StringWriter();
+                vm = job.run(SEED, test.frames, new BufferedWriter(result));
+                String output = partial + result;
+
+                int start = 0;
+                int end;
+                while ((end = output.indexOf('\n', start)) >= 0) {
+                    String actual = output.substring(start, end);
+                    if (actual.endsWith("\r")) {
+                        actual = actual.substring(0, actual.length() - 1);
+                    }
+                    String wanted = expected.readLine();
+                    line++;
+                    if (!actual.equals(wanted)) {
+                        return divergence(line, vm, sequence, wanted, actual);
+                    }
+                    start = end + 1;
+                }
+                partial = output.substring(start);
+                sequence++;
+            }
+
+            // the last line need not have a line end
+            if (!partial.isEmpty()) {
+                String wanted = expected.readLine();
+                line++;
+                if (!partial.equals(wanted)) {
+                    return divergence(line, vm, sequence - 1, wanted, partial);
+                }
+            }
+            String wanted = expected.readLine();
+            if (wanted != null) {
+                return divergence(line + 1, null, sequence, wanted, null);
+            }
+            return null;
+        }
+    }
+
+    private static String divergence(long line, VirtualMachine vm, int sequence, String expected, String actual) {
+        String job = vm == null ? "after the last job"
+                : String.format("job %d (#%d) ended at IC %d, IR %s", vm.pcb.JID, sequence, vm.instructionCounter,
+                        Memory.toString(vm.instructionRegister).trim());
+        return String.format("line %d, %s%n  expected: %s%n  actual:   %s", line, job,
+                expected == null ? "end of output" : expected, actual == null ? "end of output" : actual);
+    }
+
+    public static void main(String[] args) throws Exception {
+        // the machine must not print while the cases run
+        System.setProperty("os.trace", "OFF");
+
+        List<Case> cases = new ArrayList<>();
+        for (String dir : args.length > 0 ? args : new String[] { "." }) {
+            cases.addAll(find(Paths.get(dir)));
+        }
+        if (cases.isEmpty()) {
+            System.out.println("no input_<name>.txt with an expected_output_<name>.txt found");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(OSProjectPhase2.THREADS);
+        List<Future<String>> results = new ArrayList<>();
+        for (Case test : cases) {
+            results.add(pool.submit(() -> check(test)));
+        }
+
+        int failed = 0;
+        for (int i = 0; i < cases.size(); i++) {
+            String failure;
+            try {
+                failure = results.get(i).get();
+            } catch (ExecutionException e) {
+                failure = "could not run: " + e.getCause();
+            }
+            if (failure != null) {
+                failed++;
+                System.out.println("FAIL " + cases.get(i).name + ": " + failure);
+            }
+        }
+        pool.shutdown();
+
+        System.out.printf("%d cases, %d passed, %d failed in %.2f s%n", cases.size(), cases.size() - failed, failed,
+                (System.nanoTime() - start) / 1e9);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,76 @@
+package phase2;
+
+import java.io.*;
+
+// the ordered commit stage in front of the output spooler: jobs may finish in
+// any order, each hands in its output, the PD lines and termination block it
+// wrote to a buffer of its own, tagged with its place in the deck, and the
+// window passes them on strictly in deck order, so the output file is the same
+// byte for byte as a serial run
+// the window is size jobs wide from the oldest job not passed on yet, a job
+// further ahead has to wait before it may start, so no more than size outputs
+// are ever held however far the finished jobs get ahead of a slow one
+final class ReorderWindow {
+    private final OutputSpooler spooler;
+    private final int size;
+
+    // outputs waiting for the jobs before them, at their sequence modulo size,
+    // and where the deck carries on after each
+    private final String[] outputs;
+    private final Checkpoint[] nexts;
+
+    // the sequence number of the oldest job not passed on yet
+    private int next;
+
+    // first is the sequence number of the first job of the run
+    ReorderWindow(OutputSpooler spooler, int first, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("the reorder window must be 1 or more jobs: " + size);
+        }
+        this.spooler = spooler;
+        this.size = size;
+        this.outputs = new String[size];
+        this.nexts = new Checkpoint[size];
+        this.next = first;
+    }
+
+    // true when the job has a place in the window and may start
+    synchronized boolean admits(int sequence) {
+        return sequence - next < size;
+    }
+
+    // wait until the job has a place in the window
+    synchronized void reserve(int sequence) throws InterruptedException {
+        while (sequence - next >= size) {
+            wait();
+        }
+    }
+
+    // the job is done, any thread may hand in its output, next is where the deck
+    // carries on after the job
+    synchronized void complete(int sequence, String output, Checkpoint next) {
+        if (sequence < this.next || sequence - this.next >= size) {
+            throw new IllegalStateException("job " + sequence + " is outside the reorder window at " + this.next);
+        }
+        int slot = Math.floorMod(sequence, size);
+        outputs[slot] = output;
+        nexts[slot] = next;
+    }
+
+    // pass on the output of the oldest job and of every job after it that is done
+    // too, this is left to one thread that is waiting for the jobs anyway, so the
+    // threads running them never stop to wake the output spooler
+    synchronized void release() throws IOException {
+        int released = 0;
+        for (int slot = Math.floorMod(next, size); outputs[slot] != null; slot = Math.floorMod(next, size)) {
+            spooler.commit(outputs[slot], nexts[slot]);
+            outputs[slot] = null;
+            nexts[slot] = null;
+            next++;
+            released++;
+        }
+        if (released > 0) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package phase2;
+
+import java.util.*;
+
+// picks the page that goes out to the drum when memory is full, only frames
+// holding a job's page are candidates, page table frames are never evicted
+interface Replacement {
+    // a page was just placed in the frame
+    void loaded(int frame);
+
+    // the page in the frame was used by an instruction
+    void referenced(int frame);
+
+    // the frame no longer holds a page that may be evicted
+    void released(int frame);
+
+    // the frame whose page goes out, -1 when no frame holds a page
+    int victim();
+
+    // fifo (oldest page first), lru (least recently used) or clock (second chance),
+    // for the given number of frames a page can be in
+    static Replacement of(String policy, int frames) {
+        switch (policy) {
+            case "fifo":
+                return new FirstInFirstOut(frames);
+            case "lru":
+                return new LeastRecentlyUsed(frames);
+            case "clock":
+                return new Clock(frames);
+            default:
+                throw new IllegalArgumentException("unknown replacement policy " + policy + ", use fifo, lru or clock");
+        }
+    }
+
+    // the frames holding a page in the order they go out, a doubly linked list
+    // threaded through arrays indexed by frame, so a frame is put at the end or
+    // taken out from anywhere without a search, and the victim is at the head
+    final class FrameQueue {
+        private static final int NONE = -1;
+
+        private final int[] previous;
+        private final int[] next;
+        private final boolean[] queued;
+        private int head = NONE;
+        private int tail = NONE;
+
+        FrameQueue(int frames) {
+            previous = new int[frames];
+            next = new int[frames];
+            queued = new boolean[frames];
+        }
+
+        boolean contains(int frame) {
+            return queued[frame];
+        }
+
+        // put the frame at the end, out of its place first when it is queued
+        void add(int frame) {
+            remove(frame);
+            previous[frame] = tail;
+            next[frame] = NONE;
+            if (tail == NONE) {
+                head = frame;
+            } else {
+                next[tail] = frame;
+            }
+            tail = frame;
+            queued[frame] = true;
+        }
+
+        void remove(int frame) {
+            if (!queued[frame]) {
+                return;
+            }
+            if (previous[frame] == NONE) {
+                head = next[frame];
+            } else {
+                next[previous[frame]] = next[frame];
+            }
+            if (next[frame] == NONE) {
+                tail = previous[frame];
+            } else {
+                previous[next[frame]] = previous[frame];
+            }
+            queued[frame] = false;
+        }
+
+        // the frame at the head, -1 when none is queued
+        int first() {
+            return head;
+        }
+    }
+
+    // the page that was loaded first goes first, however much it is used
+    final class FirstInFirstOut implements Replacement {
+        // the frames holding a page, in the order their pages were loaded
+        private final FrameQueue loaded;
+
+        FirstInFirstOut(int frames) {
+            loaded = new FrameQueue(frames);
+        }
+
+        public void loaded(int frame) {
+            loaded.add(frame);
+        }
+
+        public void referenced(int frame) {
+        }
+
+        public void released(int frame) {
+            loaded.remove(frame);
+        }
+
+        public int victim() {
+            return loaded.first();
+        }
+    }
+
+    // the page that has gone unused for the longest time goes first
+    final class LeastRecentlyUsed implements Replacement {
+        // the frames holding a page, the least recently used first
+        private final FrameQueue used;
+
+        LeastRecentlyUsed(int frames) {
+            used = new FrameQueue(frames);
+        }
+
+        public void loaded(int frame) {
+            used.add(frame);
+        }
+
+        public void referenced(int frame) {
+            if (used.contains(frame)) {
+                used.add(frame);
+            }
+        }
+
+        public void released(int frame) {
+            used.remove(frame);
+        }
+
+        public int victim() {
+            return used.first();
+        }
+    }
+
+    // a hand sweeps over the frames, a page used since the hand last passed gets
+    // a second chance and loses its referenced bit, the first page without one
+    // goes, the hand only stops at frames that hold a page
+    final class Clock implements Replacement {
+        private final BitSet holdsPage;
+        private final boolean[] referenced;
+        private int hand;
+
+        Clock(int frames) {
+            holdsPage = new BitSet(frames);
+            referenced = new boolean[frames];
+        }
+
+        public void loaded(int frame) {
+            holdsPage.set(frame);
+            referenced[frame] = true;
+        }
+
+        public void referenced(int frame) {
+            referenced[frame] = true;
+        }
+
+        public void released(int frame) {
+            holdsPage.clear(frame);
+            referenced[frame] = false;
+        }
+
+        public int victim() {
+            // two sweeps at most, the first one clears every referenced bit
+            int pages = holdsPage.cardinality();
+            for (int step = 0; step < 2 * pages; step++) {
+                int frame = holdsPage.nextSetBit(hand);
+                if (frame < 0) {
+                    frame = holdsPage.nextSetBit(0);
+                }
+                hand = (frame + 1) % referenced.length;
+                if (!referenced[frame]) {
+                    return frame;
+                }
+                referenced[frame] = false;
+            }
+            return -1;
+        }
+    }
+}
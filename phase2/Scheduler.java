@@ -0,0 +1,90 @@
+package phase2;
+
+import java.util.*;
+
+// decides which of the ready jobs gets the CPU next and for how long
+interface Scheduler {
+    // the job is ready to run, it was just loaded, preempted or its I/O is done
+    void ready(VirtualMachine.PCB pcb);
+
+    // take the job that runs next off the ready queue, null when no job is ready
+    VirtualMachine.PCB next();
+
+    // instructions a job may run before the timer interrupt, 0 for no time slicing
+    int slice();
+
+    // rr (round robin with the given quantum), fcfs or sttf (shortest TTL first)
+    static Scheduler of(String policy, int quantum) {
+        switch (policy) {
+            case "rr":
+                return new RoundRobin(quantum);
+            case "fcfs":
+                return new FirstComeFirstServed();
+            case "sttf":
+                return new ShortestTimeLimitFirst();
+            default:
+                throw new IllegalArgumentException("unknown scheduling policy " + policy + ", use rr, fcfs or sttf");
+        }
+    }
+
+    // every job in turn gets a time slice of quantum instructions
+    final class RoundRobin implements Scheduler {
+        private final Deque<VirtualMachine.PCB> queue = new ArrayDeque<>();
+        private final int quantum;
+
+        RoundRobin(int quantum) {
+            if (quantum < 1) {
+                throw new IllegalArgumentException("quantum must be at least 1: " + quantum);
+            }
+            this.quantum = quantum;
+        }
+
+        public void ready(VirtualMachine.PCB pcb) {
+            queue.addLast(pcb);
+        }
+
+        public VirtualMachine.PCB next() {
+            return queue.pollFirst();
+        }
+
+        public int slice() {
+            return quantum;
+        }
+    }
+
+    // jobs run in the order they became ready, until they block or end
+    final class FirstComeFirstServed implements Scheduler {
+        private final Deque<VirtualMachine.PCB> queue = new ArrayDeque<>();
+
+        public void ready(VirtualMachine.PCB pcb) {
+            queue.addLast(pcb);
+        }
+
+        public VirtualMachine.PCB next() {
+            return queue.pollFirst();
+        }
+
+        public int slice() {
+            return 0;
+        }
+    }
+
+    // the ready job with the smallest time limit runs first, until it blocks or
+    // ends, jobs with the same limit go in deck order
+    final class ShortestTimeLimitFirst implements Scheduler {
+        private final PriorityQueue<VirtualMachine.PCB> queue = new PriorityQueue<>(
+                Comparator.<VirtualMachine.PCB>comparingInt(pcb -> pcb.TTL).thenComparingInt(pcb -> pcb.sequence));
+
+        public void ready(VirtualMachine.PCB pcb) {
+            queue.add(pcb);
+        }
+
+        public VirtualMachine.PCB next() {
+            return queue.poll();
+        }
+
+        public int slice() {
+            return 0;
+        }
+    }
+}
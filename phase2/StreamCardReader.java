@@ -0,0 +1,141 @@
+package phase2;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+// reads the cards of a deck as it streams in from a channel, stdin or a pipe from
+// whatever generates the deck, so it never has to be staged in a file
+// only the bytes from the start of the job being read onwards are buffered, a
+// job's cards are copied out by slice() and dropped from the buffer as soon as
+// the next card is read, so memory stays at the size of the largest job however
+// long the deck is
+// seek() can go back within the buffered bytes, enough to read the $AMJ card of
+// the next job again, and forward any distance by skipping what is in between
+final class StreamCardReader implements CardReader {
+    // how much is read from the channel at once, the buffer only grows past it
+    // for a job that does not fit
+    static final int CHUNK = 64 << 10;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private long bufferStart; // deck offset of the first byte in the buffer
+    private long keep; // deck offset of the first byte that must stay buffered
+    private boolean eof;
+    private long offset;
+    private long line;
+
+    StreamCardReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(CHUNK);
+        this.buffer.limit(0);
+    }
+
+    StreamCardReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    // the card is a view of the buffer, it is good until the next card is read
+    @Override
+    public Card nextCard() throws IOException {
+        int pos = (int) (offset - bufferStart);
+        int newline = indexOfNewline(pos);
+
+        // read on until the card is whole or the deck has ended
+        while (newline < 0 && !eof) {
+            long scanned = bufferStart + buffer.limit();
+            fill();
+            pos = (int) (offset - bufferStart);
+            newline = indexOfNewline((int) (scanned - bufferStart));
+        }
+        if (pos >= buffer.limit()) {
+            return null;
+        }
+
+        // the last card of the deck need not have a line end
+        int next = newline < 0 ? buffer.limit() : newline + 1;
+        int length = (newline < 0 ? buffer.limit() : newline) - pos;
+        if (length > 0 && buffer.get(pos + length - 1) == '\r') {
+            length--;
+        }
+
+        offset = bufferStart + next;
+        line++;
+        return new Card(buffer, pos, length);
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // read more of the deck into the buffer, the bytes before keep are dropped
+    // to make room first and the buffer doubles when that is not enough
+    private void fill() throws IOException {
+        int drop = (int) (Math.min(keep, offset) - bufferStart);
+        if (drop > 0) {
+            buffer.position(drop);
+            buffer.compact().flip();
+            bufferStart += drop;
+        }
+        if (buffer.limit() == buffer.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+            bigger.put(buffer).flip();
+            buffer = bigger;
+        }
+
+        int end = buffer.limit();
+        buffer.position(end).limit(buffer.capacity());
+        int read = channel.read(buffer);
+        buffer.limit(buffer.position()).position(0);
+        if (read < 0) {
+            eof = true;
+        }
+    }
+
+    // a copy of the deck's bytes in [from, to), the bytes before to are not
+    // needed any more after this
+    @Override
+    public ByteBuffer slice(long from, long to) throws IOException {
+        if (from < bufferStart || to > bufferStart + buffer.limit()) {
+            throw new IOException("bytes " + from + ".." + to + " of the deck are no longer buffered");
+        }
+        ByteBuffer copy = ByteBuffer.allocate((int) (to - from));
+        copy.put(buffer.duplicate().position((int) (from - bufferStart)).limit((int) (to - bufferStart)));
+        keep = to;
+        return copy.flip();
+    }
+
+    @Override
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public long line() {
+        return line;
+    }
+
+    @Override
+    public void seek(long offset, long line) throws IOException {
+        if (offset < bufferStart) {
+            throw new IOException("a streamed deck cannot go back to offset " + offset + ", it is at " + this.offset);
+        }
+
+        // skip forward to a card that has not been read yet
+        while (offset > bufferStart + buffer.limit() && !eof) {
+            keep = offset;
+            this.offset = bufferStart + buffer.limit();
+            fill();
+        }
+        if (offset > bufferStart + buffer.limit()) {
+            throw new IOException("offset " + offset + " is past the end of the deck");
+        }
+        this.offset = offset;
+        this.line = line;
+    }
+}
@@ -0,0 +1,87 @@
+package phase2;
+
+import java.util.*;
+
+// a small fully associative translation lookaside buffer of the running job's
+// page to frame mappings, checked before the page table is walked, entries are
+// replaced round robin, it holds one job's pages so it is flushed on every job
+// switch, and a page whose mapping changes is invalidated
+// it is there for the hit and miss counts, pageFrame is already indexed directly
+// so the walk it saves is one array read, -Dos.tlb=N turns it on with N entries,
+// off it is a static final check the JIT folds away
+// the counts are kept for the machine and charged to the job that caused them,
+// which adds them to the deck's Metrics when it ends
+final class Tlb {
+    static final int ENTRIES = Integer.getInteger("os.tlb", 0);
+    static final boolean ENABLED = ENTRIES > 0;
+
+    private final int[] pages;
+    private final int[] frames;
+    private int next;
+
+    long hits;
+    long misses;
+    long flushes;
+
+    Tlb(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("the TLB cannot have a negative number of entries: " + entries);
+        }
+        pages = new int[entries];
+        frames = new int[entries];
+        Arrays.fill(pages, -1);
+    }
+
+    // the frame of the page, or -1 on a miss
+    int lookup(int page, JobMetrics job) {
+        if (!ENABLED) {
+            return -1;
+        }
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] == page) {
+                hits++;
+                job.tlbHits++;
+                return frames[i];
+            }
+        }
+        misses++;
+        job.tlbMisses++;
+        return -1;
+    }
+
+    // remember a mapping after a miss, over the oldest entry
+    void insert(int page, int frame) {
+        if (!ENABLED) {
+            return;
+        }
+        pages[next] = page;
+        frames[next] = frame;
+        next = (next + 1) % pages.length;
+    }
+
+    // forget the page, its mapping changed
+    void invalidate(int page) {
+        if (!ENABLED) {
+            return;
+        }
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] == page) {
+                pages[i] = -1;
+            }
+        }
+    }
+
+    // forget every page, another job's page table is in use now
+    void flush(JobMetrics job) {
+        if (!ENABLED) {
+            return;
+        }
+        Arrays.fill(pages, -1);
+        flushes++;
+        job.tlbFlushes++;
+    }
+
+    double hitRate() {
+        return hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses);
+    }
+}
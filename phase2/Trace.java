@@ -0,0 +1,94 @@
+package phase2;
+
+// tracing of what a machine does, the level is picked once with -Dos.trace:
+//   OFF          nothing at all
+//   JOB          a few lines when a job starts and ends (the default)
+//   INSTRUCTION  also every LR/SR/CR/BT/GD/PD goes into a ring buffer of fixed size
+//                binary records, dumped when a job ends with an error, and the
+//                memory is printed at the end of every job
+// the levels are static finals so a disabled check is folded away by the JIT
+final class Trace {
+    enum Level {
+        OFF, JOB, INSTRUCTION
+    }
+
+    static final Level LEVEL = Level.valueOf(System.getProperty("os.trace", "JOB").toUpperCase());
+    static final boolean JOBS = LEVEL.compareTo(Level.JOB) >= 0;
+    static final boolean INSTRUCTIONS = LEVEL == Level.INSTRUCTION;
+
+    // number of records kept, rounded up to a power of two, -Dos.trace.records=N
+    static final int RECORDS = Integer.highestOneBit(Math.max(1, Integer.getInteger("os.trace.records", 1024) - 1)) << 1;
+
+    // record events
+    static final int LOAD = 1;
+    static final int STORE = 2;
+    static final int COMPARE = 3;
+    static final int BRANCH = 4;
+    static final int NO_BRANCH = 5;
+    static final int READ = 6;
+    static final int WRITE = 7;
+
+    private static final String[] NAMES = { "", "LR", "SR", "CR", "BT", "BT", "GD", "PD" };
+
+    // every record is two longs, the first holds the event in the top byte, IC in
+    // the next 24 bits and the real address in the low 32, the second holds the
+    // word or value the event worked with
+    private final long[] ring;
+    private long recorded;
+
+    Trace() {
+        ring = new long[INSTRUCTIONS ? RECORDS * 2 : 0];
+    }
+
+    // add a record, overwriting the oldest one once the ring is full
+    void record(int event, int instructionCounter, int address, long data) {
+        int slot = (int) (recorded & (RECORDS - 1)) * 2;
+        ring[slot] = (long) event << 56 | (long) (instructionCounter & 0xFFFFFF) << 32 | (address & 0xFFFFFFFFL);
+        ring[slot + 1] = data;
+        recorded++;
+    }
+
+    // forget every record, done when a new job starts
+    void clear() {
+        recorded = 0;
+    }
+
+    // the records still in the ring, oldest first, one per line
+    String dump() {
+        StringBuilder out = new StringBuilder();
+        long first = Math.max(0, recorded - RECORDS);
+        for (long n = first; n < recorded; n++) {
+            int slot = (int) (n & (RECORDS - 1)) * 2;
+            long header = ring[slot];
+            long data = ring[slot + 1];
+            int event = (int) (header >>> 56);
+            int ic = (int) (header >>> 32) & 0xFFFFFF;
+            int address = (int) header;
+
+            out.append(String.format("#%-6d IC %-4d %s ", n, ic, NAMES[event]));
+            switch (event) {
+                case LOAD:
+                    out.append("R <- memory[").append(address).append("] '").append(Memory.toString(data)).append('\'');
+                    break;
+                case STORE:
+                    out.append("memory[").append(address).append("] <- R '").append(Memory.toString(data)).append('\'');
+                    break;
+                case COMPARE:
+                    out.append("R == memory[").append(address).append("] : ").append(data != 0);
+                    break;
+                case BRANCH:
+                    out.append("taken to ").append(address);
+                    break;
+                case NO_BRANCH:
+                    out.append("not taken");
+                    break;
+                case READ:
+                case WRITE:
+                    out.append("memory[").append(address).append("] ").append(data).append(" chars");
+                    break;
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
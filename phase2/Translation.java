@@ -0,0 +1,73 @@
+package phase2;
+
+import java.io.*;
+
+// how a machine turns the addresses a program uses into real addresses of
+// memory, picked once when the machine is built and kept in a final field, so
+// the fetch and the LR/SR/CR/GD/PD operands go through a call site that only
+// ever sees one implementation and the JIT inlines it
+//   Paged   phase 2, through the job's page table, with page faults, the drum
+//           and the TLB, see VirtualMachine.getRealAddress() and AddressMap()
+//   Direct  phase 1, the address is the real address, no page table at all
+interface Translation {
+    // real address of the instruction at the instruction counter, throws
+    // ArrayIndexOutOfBoundsException when there is none
+    int instruction(int instructionCounter) throws IOException;
+
+    // real address of the operand of the instruction in IR, -1 when the
+    // interrupt it raised stopped the instruction
+    int operand(int logicalAddress) throws IOException;
+
+    final class Paged implements Translation {
+        private final VirtualMachine vm;
+
+        Paged(VirtualMachine vm) {
+            this.vm = vm;
+        }
+
+        @Override
+        public int instruction(int instructionCounter) throws IOException {
+            return vm.getRealAddress(instructionCounter);
+        }
+
+        @Override
+        public int operand(int logicalAddress) throws IOException {
+            return vm.AddressMap(logicalAddress);
+        }
+    }
+
+    final class Direct implements Translation {
+        private final VirtualMachine vm;
+
+        // words a program can address, from 0
+        private final int words;
+
+        Direct(VirtualMachine vm, int words) {
+            if (words < 1 || words > vm.memory.size()) {
+                throw new IllegalArgumentException("a direct machine addresses 1 to " + vm.memory.size()
+                        + " words: " + words);
+            }
+            this.vm = vm;
+            this.words = words;
+        }
+
+        @Override
+        public int instruction(int instructionCounter) {
+            if (instructionCounter < 0 || instructionCounter >= words) {
+                throw new ArrayIndexOutOfBoundsException("Invalid memory address");
+            }
+            return instructionCounter;
+        }
+
+        // an operand past the end of memory is an invalid address, like an invalid
+        // page fault on a paged machine
+        @Override
+        public int operand(int logicalAddress) throws IOException {
+            if (logicalAddress >= words) {
+                vm.interrupts.raise(Interrupts.PROGRAM, 3);
+                return -1;
+            }
+            return logicalAddress;
+        }
+    }
+}
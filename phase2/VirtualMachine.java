@@ -0,0 +1,1345 @@
+package phase2;
+
+import java.io.*;
+import java.util.*;
+
+// one simulated machine, all of its hardware and the running job's PCB are per
+// instance state, so several machines can run jobs side by side on a thread pool
+public class VirtualMachine {
+    // Hardware Resources, the registers hold a packed word just like memory does,
+    // the shape of both is the Geometry's
+    final Memory memory;
+    long instructionRegister;
+    long aRegister;
+
+    int instructionCounter;
+
+    // decoded instructions, one int per memory word, 0 means not decoded yet
+    // bits 0-7 hold the opcode, bit 8 is set when all operand chars are digits
+    // and the operand value itself sits from bit 9 up, see DecodeCache
+    final DecodeCache decoded;
+
+    // the compiled basic blocks of a paged machine, null unless -Dos.jit is on,
+    // see BlockCompiler
+    final BlockCompiler blocks;
+
+    // turns program addresses into real ones, paged or direct, see Translation
+    final Translation translation;
+
+    // the operating system of a machine that does not run phase 2's own, it gets
+    // every interrupt in place of the handlers of Interrupts
+    public interface Supervisor {
+        void interrupt(VirtualMachine vm) throws IOException;
+    }
+
+    // raises and services the interrupts, see Interrupts
+    final Interrupts interrupts;
+
+    // opcode and operand of the instruction in the instruction register
+    int opcode;
+    int operand;
+
+    // decoded form of the instruction in the instruction register
+    int instruction;
+
+    static final int OP_GD = 1;
+    static final int OP_PD = 2;
+    static final int OP_H = 3;
+    static final int OP_LR = 4;
+    static final int OP_SR = 5;
+    static final int OP_CR = 6;
+    static final int OP_BT = 7;
+    static final int OP_INVALID = 8;
+
+    static final int OPCODE_MASK = 0xFF;
+    static final int NUMERIC_OPERAND = 1 << 8;
+    static final int OPERAND_SHIFT = 9;
+
+    // operands that fit in a decoded instruction, the largest numeric one of an
+    // 8 char word does, garbled ones of longer words may not
+    static final int MIN_OPERAND = Integer.MIN_VALUE >> OPERAND_SHIFT;
+    static final int MAX_OPERAND = Integer.MAX_VALUE >> OPERAND_SHIFT;
+
+    // a page table entry of a page that is not in memory, "00**" in a 4 char word
+    static final long INVALID_ENTRY = Memory.pack("00" + "*".repeat(Geometry.DIGITS));
+
+    int SI;
+    int M = 0;
+
+    // toggle register C
+    boolean toggleRegister = false;
+
+    // a user defined structure for Process/Prg control board
+    static class PCB {
+        // job id, total time limit, total line limit
+        int TTL = 0;
+        int JID = 0;
+        int TLL = 0;
+
+        // the job's place in the deck, its output is written back in this order
+        int sequence;
+
+        // the machine context of the job while another job has the CPU, see save() and restore()
+        long instructionRegister;
+        long aRegister;
+        int instructionCounter;
+        int opcode;
+        int operand;
+        int instruction;
+        boolean toggleRegister;
+        int SI;
+        int PI;
+        int TI;
+        int TTC;
+        int LLC;
+        int PTR;
+        int[] pageFrame;
+        int Program_card_counter;
+        boolean isWritten;
+        boolean terminate;
+        CardReader input;
+        BufferedWriter output;
+        StringWriter result;
+        Trace trace;
+        JobMetrics metrics;
+
+        // clock tick at which the job's card I/O is done and it is ready again
+        long readyAt;
+    }
+
+    // the PCB of the job currently loaded on this machine
+    PCB pcb = new PCB();
+
+    // counter for faults
+    int TTC = 0;
+    int LLC = 0;
+
+    // interrupts
+    int TI = 0;
+    int PI = 0;
+
+    // has base address of page table
+    int PTR;
+
+    // the frames of memory that are still free, Allocate() takes its frames from here
+    FrameAllocator frames;
+
+    // the last instructions of the running job, only filled at INSTRUCTION trace level
+    Trace trace = new Trace();
+
+    // what the running job has done so far, added to the deck's Metrics when it ends
+    JobMetrics metrics = new JobMetrics();
+
+    // the page table indexed directly by logical page, holding the frame of the
+    // page, -1 when it is not mapped, or onDrum(slot) while the page is swapped out,
+    // it mirrors the entries at memory[PTR + page], which read valid bit, then the
+    // referenced and dirty bits as one digit, then the frame ("0" and "**" when swapped)
+    int[] pageFrame;
+
+    static final int REFERENCED = 1;
+    static final int DIRTY = 2;
+
+    // demand paging: what every frame holds, the page table array and PTR of the
+    // job that owns the page in it (null for free and page table frames), the
+    // logical page, its referenced/dirty bits and the drum slot holding a copy of
+    // it (-1 when there is none)
+    final int[][] frameTable;
+    final int[] framePTR;
+    final int[] framePage;
+    final int[] frameBits;
+    final int[] drumCopy;
+
+    // picks the page to swap out when memory is full, -Dos.replace=fifo|lru|clock
+    final Replacement replacement;
+
+    // recent translations of the running job's pages, -Dos.tlb=N entries
+    Tlb tlb = new Tlb(Tlb.ENTRIES);
+
+    // pages that did not fit in memory, created on the first eviction
+    Drum drum;
+
+    // page faults served with a frame and pages written out to make room
+    long pageFaults;
+    long evictions;
+
+    // the generated address by the allocate() function
+    int genAddress;
+
+    // for the error msg
+    String ErrMsg = new String();
+    int msgCode;
+
+    CardReader input; // Input cards
+    BufferedWriter output; // Output writer
+
+    // other helper data structures
+    int Program_card_counter;
+
+    // to keep a track whether a job is has written anything in the file or not
+    boolean isWritten = false;
+    boolean terminate;
+
+    // multiprogramming: when blockOnIO is set a GD or PD stops the job with blocked
+    // set, so another job can use the CPU while the cards are read or printed
+    boolean blockOnIO;
+    boolean blocked;
+
+    // instructions left in the time slice, the timer interrupt stops the job when it
+    // counts down to 0, 0 means the job is not time sliced
+    int sliceLeft;
+
+    // Initialize the registers, memory is cleared a frame at a time by Allocate(),
+    // so jobs resident at the same time keep their memory
+    public void init() {
+        // clear the register and the instruction register
+        instructionRegister = Memory.BLANK;
+        aRegister = Memory.BLANK;
+
+        // reset the counter and interrupts
+        instructionCounter = 0;
+        toggleRegister = false;
+
+        // Reinitialized Counters for Time Limit and Line Limit
+        TTC = 0;
+        LLC = 0;
+
+        // Interruption codes initializing, systeminterrupts, program interrupt and time
+        // interrupt
+        SI = 0;
+        PI = 0;
+        TI = 0;
+
+        // initialise the helper variables
+        trace.clear();
+        tlb.flush(metrics);
+        Program_card_counter = 0;
+        Arrays.fill(pageFrame, -1);
+        terminate = false;
+        isWritten = false;
+    }
+
+    // save the context of the running job into its PCB, so another job can run
+    void save() {
+        pcb.instructionRegister = instructionRegister;
+        pcb.aRegister = aRegister;
+        pcb.instructionCounter = instructionCounter;
+        pcb.opcode = opcode;
+        pcb.operand = operand;
+        pcb.instruction = instruction;
+        pcb.toggleRegister = toggleRegister;
+        pcb.SI = SI;
+        pcb.PI = PI;
+        pcb.TI = TI;
+        pcb.TTC = TTC;
+        pcb.LLC = LLC;
+        pcb.PTR = PTR;
+        pcb.pageFrame = pageFrame;
+        pcb.Program_card_counter = Program_card_counter;
+        pcb.isWritten = isWritten;
+        pcb.terminate = terminate;
+        pcb.input = input;
+        pcb.output = output;
+        pcb.trace = trace;
+        pcb.metrics = metrics;
+    }
+
+    // put a job's saved context back on the machine, it becomes the running job
+    void restore(PCB next) {
+        pcb = next;
+        instructionRegister = next.instructionRegister;
+        aRegister = next.aRegister;
+        instructionCounter = next.instructionCounter;
+        opcode = next.opcode;
+        operand = next.operand;
+        instruction = next.instruction;
+        toggleRegister = next.toggleRegister;
+        SI = next.SI;
+        PI = next.PI;
+        TI = next.TI;
+        TTC = next.TTC;
+        LLC = next.LLC;
+        PTR = next.PTR;
+        pageFrame = next.pageFrame;
+        Program_card_counter = next.Program_card_counter;
+        isWritten = next.isWritten;
+        terminate = next.terminate;
+        input = next.input;
+        output = next.output;
+        trace = next.trace;
+        metrics = next.metrics;
+
+        // the translations of the job that ran before do not hold for this one
+        tlb.flush(metrics);
+    }
+
+    // take a free frame from the allocator and clear it, when memory is full a page
+    // goes out to the drum to make room, when not even that is possible the job is
+    // terminated and -1 is returned instead
+    public int Allocate() throws IOException {
+        int frame = frames.allocate();
+        if (frame < 0 && pageOut()) {
+            frame = frames.allocate();
+        }
+        if (frame < 0) {
+            System.out.println("Out of memory, no free frame left");
+            terminate(9);
+            return -1;
+        }
+        int base = Geometry.base(frame);
+        memory.fill(base, base + Geometry.PAGE_WORDS, Memory.BLANK);
+        written(base, base + Geometry.PAGE_WORDS);
+        return frame;
+    }
+
+    // the words [from, to) of memory changed, their decoded forms and the blocks
+    // compiled from their frames no longer hold
+    void written(int from, int to) {
+        decoded.clear(from, to);
+        if (BlockCompiler.ENABLED && blocks != null) {
+            blocks.clear(from, to);
+        }
+    }
+
+    // the pageFrame entry of a page swapped out to the drum slot, and the other
+    // way round, the slot of such an entry
+    static int onDrum(int slot) {
+        return -2 - slot;
+    }
+
+    // give back the page table frame, every frame mapped by the job's pages and
+    // every drum slot holding one of them
+    void releaseFrames() {
+        for (int page = 0; page < pageFrame.length; page++) {
+            int frame = pageFrame[page];
+            if (frame >= 0) {
+                if (drumCopy[frame] >= 0) {
+                    drum.release(drumCopy[frame]);
+                }
+                replacement.released(frame);
+                frameTable[frame] = null;
+                frames.release(frame);
+            } else if (frame < -1) {
+                drum.release(onDrum(frame));
+            }
+            pageFrame[page] = -1;
+        }
+        tlb.flush(metrics);
+        if (PTR >= 0) {
+            frames.release(Geometry.page(PTR));
+            PTR = -1;
+        }
+    }
+
+    // Print the current memory contents
+    private void printMemory() {
+
+        StringBuilder dump = new StringBuilder("Memory content:\n");
+
+        for (int i = 0; i < memory.size(); i++) {
+            dump.append("M[").append(i).append("]: ").append(Memory.toString(memory.read(i))).append('\n');
+        }
+        System.out.print(dump);
+    }
+
+    // map a logical page to a frame, both in pageFrame and in the page table entry
+    // for that page in memory, and return the frame, the page starts out clean and
+    // unreferenced and becomes a candidate for replacement
+    private int mapPage(int page, int frame) {
+        pageFrame[page] = frame;
+        tlb.invalidate(page);
+        int entry = PTR + page;
+        memory.setChar(entry, 0, '1');
+        memory.setChar(entry, 1, '0');
+        for (int i = Memory.WORD_SIZE - 1, digits = frame; i >= 2; i--, digits /= 10) {
+            memory.setChar(entry, i, (char) (digits % 10 + '0'));
+        }
+
+        frameTable[frame] = pageFrame;
+        framePTR[frame] = PTR;
+        framePage[frame] = page;
+        frameBits[frame] = 0;
+        drumCopy[frame] = -1;
+        replacement.loaded(frame);
+        return frame;
+    }
+
+    // the page in the frame was used, set its referenced bit, and its dirty bit
+    // when it was written, the page table entry only changes when a bit does
+    private void reference(int frame, boolean write) {
+        replacement.referenced(frame);
+        int bits = write ? REFERENCED | DIRTY : REFERENCED;
+        if ((frameBits[frame] & bits) != bits && frameTable[frame] != null) {
+            frameBits[frame] |= bits;
+            memory.setChar(framePTR[frame] + framePage[frame], 1, (char) ('0' + frameBits[frame]));
+        }
+    }
+
+    // write the page the replacement policy picks out to the drum and free its
+    // frame, a clean page that already has a copy there is not written again,
+    // returns false when there is no page to evict or no room on the drum
+    private boolean pageOut() throws IOException {
+        int frame = replacement.victim();
+        if (frame < 0) {
+            return false;
+        }
+
+        int slot = drumCopy[frame];
+        if (slot < 0 || (frameBits[frame] & DIRTY) != 0) {
+            if (slot < 0) {
+                if (drum == null) {
+                    drum = new Drum(OSProjectPhase2.DRUM_PAGES);
+                }
+                slot = drum.allocate();
+                if (slot < 0) {
+                    System.out.println("The drum is full, no page can be swapped out");
+                    return false;
+                }
+            }
+            drum.write(slot, memory, Geometry.base(frame));
+        }
+
+        // the owner's page table now says the page is on the drum, and when the
+        // owner is the running job its translation goes out of the TLB
+        int entry = framePTR[frame] + framePage[frame];
+        if (frameTable[frame] == pageFrame) {
+            tlb.invalidate(framePage[frame]);
+        }
+        frameTable[frame][framePage[frame]] = onDrum(slot);
+        memory.write(entry, INVALID_ENTRY);
+
+        replacement.released(frame);
+        frameTable[frame] = null;
+        frames.release(frame);
+        evictions++;
+        metrics.evictions++;
+        return true;
+    }
+
+    // a valid page fault on a page that was swapped out, bring it back from the
+    // drum into a frame of its own, returns the frame or -1 when the job was
+    // terminated for want of memory
+    private int pageIn(int page) throws IOException {
+        int slot = onDrum(pageFrame[page]);
+        int frame = Allocate();
+        if (frame < 0) {
+            return -1;
+        }
+        drum.read(slot, memory, Geometry.base(frame));
+        mapPage(page, frame);
+
+        // the drum copy stays, so the page is only written out again once it is dirty
+        drumCopy[frame] = slot;
+        pageFaults++;
+        metrics.validFaults++;
+        return frame;
+    }
+
+    // decode the instruction word at the given address once, so the execute loop
+    // can dispatch on ints instead of building opcode strings on every fetch
+    int decode(int address) {
+        long word = memory.read(address);
+        char second = Memory.charAt(word, 1);
+        int op;
+        switch (Memory.charAt(word, 0)) {
+            case 'G':
+                op = second == 'D' ? OP_GD : OP_INVALID;
+                break;
+            case 'P':
+                op = second == 'D' ? OP_PD : OP_INVALID;
+                break;
+            case 'H':
+                op = second == ' ' ? OP_H : OP_INVALID;
+                break;
+            case 'L':
+                op = second == 'R' ? OP_LR : OP_INVALID;
+                break;
+            case 'S':
+                op = second == 'R' ? OP_SR : OP_INVALID;
+                break;
+            case 'C':
+                op = second == 'R' ? OP_CR : OP_INVALID;
+                break;
+            case 'B':
+                op = second == 'T' ? OP_BT : OP_INVALID;
+                break;
+            default:
+                op = OP_INVALID;
+        }
+
+        // the operand is read as decimal digits even when a char is not one, a GD
+        // with a garbled operand still goes somewhere
+        long value = 0;
+        boolean numeric = true;
+        for (int i = 2; i < Memory.WORD_SIZE; i++) {
+            char digit = Memory.charAt(word, i);
+            value = value * 10 + (digit - '0');
+            numeric &= Character.isDigit(digit);
+        }
+        if (value < MIN_OPERAND || value > MAX_OPERAND) {
+            value = -1;
+        }
+        int insn = op | (int) value << OPERAND_SHIFT;
+        if (numeric) {
+            insn |= NUMERIC_OPERAND;
+        }
+        decoded.set(address, insn);
+        return insn;
+    }
+
+    // gets the actual address of the instruction from the page table in the memory
+    int getRealAddress(int instructionCounter) throws IOException {
+        // the page of the instruction, IC / page size, indexes the page table directly
+        int page = Geometry.page(instructionCounter);
+
+        // the TLB has the frame of a recently used page, otherwise walk the page table
+        int frame = tlb.lookup(page, metrics);
+        if (frame < 0) {
+            // check for out of bounds access
+            if (page >= pageFrame.length || pageFrame[page] == -1) {
+                throw new ArrayIndexOutOfBoundsException("Invalid page table access");
+            }
+
+            // get the frame number of the instruction from the page table, a page that
+            // was swapped out is brought back first
+            frame = pageFrame[page];
+            if (frame < 0) {
+                frame = pageIn(page);
+                if (frame < 0) {
+                    throw new ArrayIndexOutOfBoundsException("No frame to page in to");
+                }
+            }
+            tlb.insert(page, frame);
+        }
+        reference(frame, false);
+
+        // address is the frame's base + offset
+        int address = Geometry.base(frame) + Geometry.offset(instructionCounter);
+
+        // check for out of bounds access
+        if (address >= memory.size() || address < 0) {
+            throw new ArrayIndexOutOfBoundsException("Invalid memory address");
+        }
+
+        // return the real address of the instruction
+        return address;
+    }
+
+    // convert logical address into physical address
+    // it means whenever there is an nstruction GD20, 20 is operand which is the
+    // logical address, we have to convert that into physical address
+    int AddressMap(int logicalAddress) throws IOException {
+
+        // Handle halt instruction separately
+        if (opcode == OP_H || opcode == OP_BT) {
+            return -1;
+        }
+
+        // check whether operand is number or not, if not raise the program interrupt,
+        // opcode error
+        // Validate operand digits
+        if ((instruction & NUMERIC_OPERAND) == 0) {
+            interrupts.raise(Interrupts.PROGRAM, 2);
+            return -1;
+        }
+
+        // get the page number for the logical address by diving the logical address by
+        // frame size / page size
+        int page = Geometry.page(logicalAddress);
+
+        if (page >= pageFrame.length) {
+            System.out.println("Page table full");
+            terminate(6);
+            return -1;
+        }
+
+        // a TLB hit needs no page table walk
+        int frame = tlb.lookup(page, metrics);
+        if (frame >= 0) {
+            reference(frame, opcode == OP_SR);
+            return Geometry.base(frame) + Geometry.offset(logicalAddress);
+        }
+
+        // Check if the page is mapped in the page table
+        frame = pageFrame[page];
+        if (frame >= 0) {
+            tlb.insert(page, frame);
+            reference(frame, opcode == OP_SR);
+            return Geometry.base(frame) + Geometry.offset(logicalAddress);
+        }
+
+        // a page on the drum is a valid page fault for every instruction
+        if (frame < -1) {
+            frame = pageIn(page);
+            if (frame < 0) {
+                return -1;
+            }
+            tlb.insert(page, frame);
+            reference(frame, opcode == OP_SR);
+            return Geometry.base(frame) + Geometry.offset(logicalAddress);
+        }
+
+        // Handle GD and SR instructions for valid page faults
+        if (opcode == OP_GD || opcode == OP_SR) {
+
+            // Allocate new frame and update page table
+            frame = Allocate();
+            if (frame < 0) {
+                return -1;
+            }
+            int realAddress = mapPage(page, frame);
+            reference(frame, true);
+            pageFaults++;
+            metrics.validFaults++;
+
+            PI = 0;
+            return Geometry.base(realAddress) + Geometry.offset(logicalAddress);
+        }
+
+        // INvalid Page fault for other instructions than GD and SR
+        interrupts.raise(Interrupts.PROGRAM, 3);
+        return -1;
+    }
+
+    // the GD supervisor call, read the next data card into the operand's page
+    void read() throws IOException {
+        // check if theres a prg interrupt already
+        if (PI != 0)
+            return; // Don't proceed if there's a pending interrupt
+
+        // get the page of the operand, GD operands are not checked for digits before
+        // execution so a garbled one can point outside the page table
+        int page = Geometry.page(operand);
+        if (page < 0 || page >= pageFrame.length) {
+            interrupts.raise(Interrupts.PROGRAM, 2);
+            return;
+        }
+
+        // if the page is not mapped yet allocate a frame for it and add it to the page
+        // table, if it was swapped out bring it back
+        int frame = pageFrame[page];
+        if (frame < -1) {
+            frame = pageIn(page);
+            if (frame < 0) {
+                return;
+            }
+        } else if (frame < 0) {
+            frame = Allocate();
+            if (frame < 0) {
+                return;
+            }
+            mapPage(page, frame);
+            pageFaults++;
+            metrics.validFaults++;
+        }
+        reference(frame, true);
+
+        // Get real address of the operand
+        int row = Geometry.base(frame) + Geometry.offset(operand);
+
+        Card buffer = input.nextCard();
+
+        if (buffer == null || buffer.startsWith("$END")) {
+            terminate(1);
+            return;
+        }
+
+        // Skip control cards
+        if (buffer.startsWith("$")) {
+            return;
+        }
+
+        // Write to memory as one block, the words written have to be decoded again
+        int length = Math.min(buffer.length(), Geometry.LINE_CHARS);
+        memory.writeChars(row, buffer, length);
+        written(row, row + (length + Memory.WORD_SIZE - 1) / Memory.WORD_SIZE);
+        if (Trace.INSTRUCTIONS) {
+            trace.record(Trace.READ, instructionCounter, row, length);
+        }
+        metrics.cardsRead++;
+
+        SI = 0;
+    }
+
+    // the PD supervisor call, print the operand's page as a line of the job's output
+    void write() throws IOException {
+        // since there was a PD instruction, increment the line limit counter
+        LLC++;
+        if (LLC > pcb.TLL) {
+            terminate(2);
+            return;
+        }
+
+        try {
+            // is Written checks whether the current job has a first line written to output.txt or not
+            if (!isWritten) {
+                isWritten = true;
+            } else {
+                output.write("\n");
+            }
+
+            // get address
+            int row = translation.operand(operand);
+
+            // the translation raised an interrupt or ended the job, the line is not printed
+            if (row < 0) {
+                return;
+            }
+
+            if (row >= memory.size()) {
+                System.out.println("Invalid memory access in write(): " + row);
+                terminate(6);
+                return;
+            }
+
+            // copy the block out of memory, the line is padded with spaces to a page of chars
+            char[] line = new char[Geometry.LINE_CHARS];
+            Arrays.fill(line, ' ');
+            memory.readChars(row, Math.min(Geometry.PAGE_WORDS, memory.size() - row), line);
+
+            // Only keep printable characters or space
+            for (int i = 0; i < line.length; i++) {
+                char c = line[i];
+                if (!(Character.isLetterOrDigit(c) || c == ' ' || c == '*')) {
+                    line[i] = ' ';
+                }
+            }
+
+            if (Trace.INSTRUCTIONS) {
+                trace.record(Trace.WRITE, instructionCounter, row, line.length);
+            }
+
+            // write the contents to the job's output, the spooler writes it to the file
+            output.write(line);
+            metrics.linesPrinted++;
+        } catch (IOException e) {
+            System.out.println("Error writing to output: " + e.getMessage());
+            throw e;
+        }
+
+        SI = 0;
+    }
+
+    // the terminate function
+    void terminate(int msgCode) {
+        // makes the terminate flag as true,since there was an interrupt or H command to stop the currnet job
+        terminate = true;
+        metrics.exitCode = msgCode;
+        if (msgCode == 6) {
+            metrics.invalidFaults++;
+        }
+        try {
+            // a string to store the error message
+            StringBuilder errMsg = new StringBuilder();
+            errMsg.append("\n");
+            errMsg.append(String.format("JOB ID   : %4d", pcb.JID));
+            errMsg.append("\n");
+
+            // check the msgCode for the error that has occcured
+            switch (msgCode) {
+                case 0:
+                    errMsg.append(" NO ERROR");
+                    break;
+                case 1:
+                    errMsg.append(" OUT OF DATA");
+                    break;
+                case 2:
+                    errMsg.append(" LINE LIMIT EXCEEDED");
+                    break;
+                case 3:
+                    errMsg.append(" TIME LIMIT EXCEEDED");
+                    break;
+                case 4:
+                    errMsg.append(" OPERATION CODE ERROR");
+                    break;
+                case 5:
+                    errMsg.append(" OPERAND ERROR");
+                    break;
+                case 6:
+                    errMsg.append(" INVALID PAGE FAULT");
+                    break;
+                case 7:
+                    errMsg.append(" TIME LIMIT EXCEEDED And OPERATION CODE ERROR");
+                    break;
+                case 8:
+                    errMsg.append(" TIME LIMIT EXCEEDED And OPERAND ERROR");
+                    break;
+                case 9:
+                    errMsg.append(" OUT OF MEMORY");
+                    break;
+            }
+
+            // construct the error msg and write to the file
+            errMsg.append("\n");
+            errMsg.append(String.format("IC       : %d", instructionCounter));
+            errMsg.append("\n");
+            errMsg.append("IR       : ");
+            errMsg.append(Memory.toString(instructionRegister));
+            errMsg.append("\n");
+            errMsg.append(String.format("TTC      : %d", TTC));
+            errMsg.append("\n");
+            errMsg.append(String.format("LLC      : %d", LLC));
+            errMsg.append("\n\n");
+
+            output.write(errMsg.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // show how the job got there when it ended with an error
+        if (Trace.INSTRUCTIONS && msgCode != 0) {
+            System.out.print("Trace of job " + pcb.JID + " (" + msgCode + "):\n" + trace.dump());
+        }
+    }
+
+    // execute user program function, important ahe lmao
+    void executeUserProgram() throws IOException {
+        // make a check whether terminate is false, then only continue
+        while (!terminate) {
+            // Check Time Limit before executing instruction
+            int executed = 0;
+            if (TTC >= pcb.TTL) {
+                interrupts.raise(Interrupts.TIMER, 2);
+            } else {
+                executed = execute();
+            }
+
+            // the instruction boundary, every interrupt raised since the last one
+            // is serviced here and nowhere else
+            if (interrupts.pending != 0) {
+                interrupts.service();
+            }
+            if (executed == 0) {
+                continue;
+            }
+
+            // the job waits for its card I/O, the CPU can go to another job
+            if (blockOnIO && !terminate && (opcode == OP_GD || opcode == OP_PD)) {
+                blocked = true;
+                break;
+            }
+
+            // timer interrupt, the time slice is used up, a block never runs past it
+            if (sliceLeft > 0 && (sliceLeft -= executed) == 0) {
+                break;
+            }
+        }
+    }
+
+    // fetch, decode and execute the instruction at the instruction counter, or
+    // the compiled block starting there, an interrupt an instruction raises stops
+    // it and waits for the boundary, returns how many instructions ran, 0 when it
+    // was refused before it ran
+    private int execute() throws IOException {
+        // Get real address
+        int address;
+        try {
+            address = translation.instruction(instructionCounter);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Invalid Page Fault, unless paging in already ended the job
+            if (!terminate) {
+                interrupts.raise(Interrupts.PROGRAM, 3);
+            }
+            return 0;
+        }
+
+        if (BlockCompiler.ENABLED && blocks != null) {
+            int ran = runBlocks(address);
+            if (ran > 0) {
+                return ran;
+            }
+        }
+
+        // Load instruction register, the word was decoded when its card was loaded
+        // or on its first fetch after being overwritten
+        instructionRegister = memory.read(address);
+
+        int insn = decoded.get(address);
+        if (insn == 0) {
+            insn = decode(address);
+        }
+        instruction = insn;
+        opcode = insn & OPCODE_MASK;
+        operand = insn >> OPERAND_SHIFT;
+
+        // Validate operation code, check for opcode error
+        if (opcode == OP_INVALID) {
+            interrupts.raise(Interrupts.PROGRAM, 1);
+            return 0;
+        }
+
+        // Validate operand for numeric instructions and operand error
+        if (opcode >= OP_LR && (insn & NUMERIC_OPERAND) == 0) {
+            interrupts.raise(Interrupts.PROGRAM, 2);
+            return 0;
+        }
+
+        // Increment IC before execution
+        instructionCounter++;
+
+        // Increment TTC after validation but before execution, since there was an instruction 
+        TTC++;
+        metrics.instructions[opcode]++;
+
+        // examine which instruction was it and execute
+        switch (opcode) {
+            case OP_LR:
+                loadRegister();
+                break;
+            case OP_SR:
+                storeRegister();
+                break;
+            case OP_CR:
+                compareRegister();
+                break;
+            case OP_BT:
+                branchOnTrue();
+                break;
+            case OP_GD:
+                interrupts.raise(Interrupts.SUPERVISOR, 1);
+                break;
+            case OP_PD:
+                interrupts.raise(Interrupts.SUPERVISOR, 2);
+                break;
+            case OP_H:
+                interrupts.raise(Interrupts.SUPERVISOR, 3);
+                break;
+        }
+        return 1;
+    }
+
+    // run the compiled blocks starting at the real address the instruction
+    // counter was translated to, as many instructions of them as the time limit
+    // and the time slice leave, returns how many ran, 0 when there is no block
+    // there and the interpreter runs the instruction
+    // a block that runs to its end goes straight on to the block at the new
+    // instruction counter while that is still in the same page, so a loop
+    // within a page stays here until its time is up or it leaves the page
+    // the machine is left as if the interpreter had run them, the code frame is
+    // referenced on every block's entry and again before the last instruction's
+    // operand, so the replacement policy sees the frames in the order the
+    // interpreter's fetches would have shown it
+    private int runBlocks(int address) {
+        BlockCompiler.Block block = blocks.enter(address);
+        if (block == null) {
+            return 0;
+        }
+        int budget = pcb.TTL - TTC;
+        if (sliceLeft > 0) {
+            budget = Math.min(budget, sliceLeft);
+        }
+
+        int codePage = Geometry.page(instructionCounter);
+        int codeFrame = Geometry.page(address);
+        int total = 0;
+        while (true) {
+            int ran = runBlock(block, codeFrame, budget - total);
+            total += ran;
+            if (ran < block.length || total == budget || Geometry.page(instructionCounter) != codePage) {
+                return total;
+            }
+            block = blocks.enter(Geometry.base(codeFrame) + Geometry.offset(instructionCounter));
+            if (block == null) {
+                return total;
+            }
+            reference(codeFrame, false);
+        }
+    }
+
+    // run up to limit instructions of one block, returns how many ran
+    private int runBlock(BlockCompiler.Block block, int codeFrame, int limit) {
+        int length = Math.min(block.length, limit);
+        int ran = 0;
+        while (ran < length) {
+            int insn = block.instructions[ran];
+            int op = insn & OPCODE_MASK;
+            if (op == OP_BT) {
+                if (ran > 0) {
+                    reference(codeFrame, false);
+                }
+                ran++;
+                instructionCounter += ran;
+                if (toggleRegister) {
+                    instructionCounter = insn >> OPERAND_SHIFT;
+                }
+                return finishBlock(block, ran);
+            }
+
+            // an operand page that is not in memory is the interpreter's to fault on
+            int frame = pageFrame[block.pages[ran]];
+            if (frame < 0) {
+                break;
+            }
+            if (ran > 0 && ran == length - 1) {
+                reference(codeFrame, false);
+            }
+            int real = Geometry.base(frame) + block.offsets[ran];
+            ran++;
+            if (op == OP_LR) {
+                reference(frame, false);
+                aRegister = memory.read(real);
+            } else if (op == OP_SR) {
+                reference(frame, true);
+                memory.write(real, aRegister);
+                written(real, real + 1);
+
+                // the block's own frame changed, the words after this one may be new
+                if (frame == codeFrame) {
+                    break;
+                }
+            } else {
+                reference(frame, false);
+                toggleRegister = aRegister == memory.read(real);
+            }
+        }
+        instructionCounter += ran;
+        return finishBlock(block, ran);
+    }
+
+    // charge the instructions a block ran and leave the last of them in the
+    // registers, as the interpreter would have
+    private int finishBlock(BlockCompiler.Block block, int ran) {
+        if (ran == 0) {
+            return 0;
+        }
+        TTC += ran;
+        if (ran == block.length) {
+            for (int op = OP_LR; op <= OP_BT; op++) {
+                metrics.instructions[op] += block.counts[op];
+            }
+        } else {
+            for (int i = 0; i < ran; i++) {
+                metrics.instructions[block.instructions[i] & OPCODE_MASK]++;
+            }
+        }
+        instructionRegister = block.words[ran - 1];
+        instruction = block.instructions[ran - 1];
+        opcode = instruction & OPCODE_MASK;
+        operand = instruction >> OPERAND_SHIFT;
+        return ran;
+    }
+
+    // the simulation function, which is called in the executeUserProgram function
+    private void simulation() {
+
+        // increase the total time counter, as instruction is being executed and check
+        // if TTC is more than total time limit,if yes then make a time interrupt
+        TTC++;
+
+        if (TTC > pcb.TTL) {
+
+            // set the timer interrupt
+            TI = 2;
+
+        }
+
+    }
+
+    // the change from the phase 1 to phase 2 , is first you have to map the real
+    // address in the instruction functions like LR, SR, CR, BT
+    // Load data from memory into the accumulator register R
+    // Modify the loadRegister method to handle invalid addresses:
+    private void loadRegister() throws IOException {
+        int address = translation.operand(operand);
+
+        if (address == -1) {
+            return; // Return if address mapping failed
+        }
+
+        if (address >= memory.size()) {
+            System.out.println("Address out of bounds during load.");
+            terminate(6);
+            return;
+        }
+
+        aRegister = memory.read(address);
+        if (Trace.INSTRUCTIONS) {
+            trace.record(Trace.LOAD, instructionCounter, address, aRegister);
+        }
+    }
+
+    // Store data from accumulator register R into memory
+    private void storeRegister() throws IOException {
+
+        // get the real address to work with
+        int address = translation.operand(operand);
+
+        if (address == -1) {
+            return; // Return if address mapping failed
+        }
+
+        if (address >= memory.size()) {
+            System.out.println("Address out of bounds during store.");
+            return;
+        }
+        memory.write(address, aRegister); // Store R data into memory
+        written(address, address + 1);
+        if (Trace.INSTRUCTIONS) {
+            trace.record(Trace.STORE, instructionCounter, address, aRegister);
+        }
+    }
+
+    // Compare contents of register R with memory
+    private void compareRegister() throws IOException {
+
+        // get the real address to work with
+        int address = translation.operand(operand);
+
+        if (address == -1) {
+            return; // Return if address mapping failed
+        }
+
+        if (address >= memory.size()) {
+            System.out.println("Address out of bounds during compare.");
+            return;
+        }
+        toggleRegister = aRegister == memory.read(address); // Whole word compare
+        if (Trace.INSTRUCTIONS) {
+            trace.record(Trace.COMPARE, instructionCounter, address, toggleRegister ? 1 : 0);
+        }
+    }
+
+    // Branch to memory address if toggle register C is true
+    // jump to the frame number mentioned in the operand
+    private void branchOnTrue() {
+        if (toggleRegister) {
+            int address = operand;
+            if (address >= memory.size()) {
+                System.out.println("Address out of bounds during branch.");
+                return;
+            }
+            instructionCounter = address; // Set instruction counter to branch address
+            if (Trace.INSTRUCTIONS) {
+                trace.record(Trace.BRANCH, instructionCounter, address, 0);
+            }
+        } else if (Trace.INSTRUCTIONS) {
+            trace.record(Trace.NO_BRANCH, instructionCounter, -1, 0);
+        }
+    }
+
+    // Start Execution function
+    public void startExecution() throws IOException {
+        // set the instruction counter to 0
+        instructionCounter = 0;
+
+        // calling executeUserProgram
+        executeUserProgram();
+    }
+
+    // read the job's $AMJ card into the PCB, set up its page table and load its
+    // program cards, returns the card after the program, which is $DTA when the
+    // job is ready to run
+    Card loadJob(Card amj) throws IOException {
+        // new job found now initialise the components, its flush of the TLB is
+        // already its own
+        metrics = new JobMetrics();
+        init();
+
+        // create and intitialise the PCB, the fields are read straight off the card
+        pcb.JID = amj.parseInt(4, 8);
+        pcb.TTL = amj.parseInt(8, 12);
+        pcb.TLL = amj.parseInt(12, amj.length());
+        metrics.jid = pcb.JID;
+        metrics.sequence = pcb.sequence;
+
+        // allocate a frame for the page table, with no memory left the job has
+        // been terminated already and the rest of its cards are skipped
+        PTR = -1;
+        int ptFrame = Allocate();
+        if (ptFrame < 0) {
+            return amj;
+        }
+        PTR = Geometry.base(ptFrame);
+
+        // initialise the page table, no page is valid yet
+        memory.fill(PTR, PTR + pageFrame.length, INVALID_ENTRY);
+
+        if (Trace.JOBS) {
+            System.out.println("AMJ found! Job Id : " + pcb.JID + ", Time Limit : " + pcb.TTL
+                    + ", Line Limit : " + pcb.TLL);
+        }
+
+        // Read next line (program cards)
+        Card buffer = input.nextCard();
+
+        // Process program cards until $DTA
+        while (buffer != null && !buffer.startsWith("$DTA")) {
+            // take a temp variable to store program's base address
+            int prgCardFrame = Allocate();
+            if (prgCardFrame < 0) {
+                break;
+            }
+            int prgCardAddress = Geometry.base(prgCardFrame);
+
+            // Update page table, program card n is logical page n
+            mapPage(Program_card_counter, prgCardFrame);
+            Program_card_counter++;
+
+            // Load instructions into memory
+            int col = 0;
+            for (int i = 0; i < buffer.length(); i++) {
+                if (buffer.charAt(i) == ' ') {
+                    continue;
+                }
+
+                memory.setChar(prgCardAddress, col, buffer.charAt(i));
+                col++;
+
+                if (col == Memory.WORD_SIZE) {
+                    prgCardAddress++;
+                    col = 0;
+                }
+            }
+
+            // decode the card's instructions now, rather than on every fetch
+            for (int i = Geometry.base(prgCardFrame); i < prgCardAddress; i++) {
+                decode(i);
+            }
+
+            buffer = input.nextCard();
+        }
+        return buffer;
+    }
+
+    // skip the data cards the job did not read, up to its $END card, and give
+    // back the job's frames
+    void endJob(Card buffer) throws IOException {
+        // Skip data section until $END
+        while (buffer != null && !buffer.startsWith("$END")) {
+            buffer = input.nextCard();
+        }
+
+        // the job is done, its frames can be used by the next one
+        releaseFrames();
+
+        // the job's counts go to the deck
+        metrics.turnaround = System.nanoTime() - metrics.started;
+        Metrics.DECK.add(metrics);
+
+        if (buffer != null) {
+            if (Trace.INSTRUCTIONS) {
+                printMemory();
+            }
+            if (Trace.INSTRUCTIONS && Tlb.ENABLED) {
+                System.out.printf("TLB: %d hits, %d misses (%.1f%% hit rate), %d flushes%n",
+                        tlb.hits, tlb.misses, tlb.hitRate(), tlb.flushes);
+            }
+            if (Trace.JOBS) {
+                System.out.printf("Job %d: %d instructions, %d cards read, %d lines printed, %d page faults,"
+                        + " %.3f ms%n", metrics.jid, metrics.instructions(), metrics.cardsRead,
+                        metrics.linesPrinted, metrics.validFaults, metrics.turnaround / 1e6);
+                System.out.println(buffer + " _____________________END OF JOB_____________________");
+            }
+        }
+    }
+
+    // the load function, chalo load karo bhaisab
+    void load() {
+        try {
+
+            // take the current line in the buffer
+            Card buffer;
+            while ((buffer = input.nextCard()) != null) {
+                // In case the first four letters are $AMJ
+                if (buffer.startsWith("$AMJ")) {
+                    buffer = loadJob(buffer);
+
+                    // Start execution when $DTA is found
+                    if (buffer != null && buffer.startsWith("$DTA")) {
+                        startExecution();
+                    }
+
+                    endJob(buffer);
+                }
+            }
+
+        } catch (Exception exception) {
+            System.out.println("load(): cannot read the input file:");
+            exception.printStackTrace();
+        }
+    }
+
+    // a phase 2 machine, paged, with the jobs on the input cards and frames for
+    // their pages from the allocator, memory is as large as the geometry says
+    VirtualMachine(CardReader input, BufferedWriter output, FrameAllocator frames) {
+        this(Geometry.MEMORY_WORDS, frames.frames(), null);
+        this.input = input;
+        this.output = output;
+        this.frames = frames;
+    }
+
+    // a machine of the given number of words of memory, paged unless it has a
+    // supervisor, pages only go in the first frames of them, the bookkeeping of
+    // frames and the replacement policy cover just those
+    private VirtualMachine(int words, int frames, Supervisor supervisor) {
+        if (Geometry.PROBLEM != null) {
+            throw new IllegalArgumentException(Geometry.PROBLEM);
+        }
+        memory = Memory.of(words);
+        decoded = new DecodeCache(words);
+        pageFrame = new int[Geometry.PAGE_TABLE_ENTRIES];
+        blocks = BlockCompiler.ENABLED && supervisor == null ? new BlockCompiler(this, words) : null;
+
+        if (frames < 0 || frames > words / Geometry.PAGE_WORDS) {
+            throw new IllegalArgumentException("a machine of " + words + " words has up to "
+                    + words / Geometry.PAGE_WORDS + " frames: " + frames);
+        }
+        frameTable = new int[frames][];
+        framePTR = new int[frames];
+        framePage = new int[frames];
+        frameBits = new int[frames];
+        drumCopy = new int[frames];
+        replacement = Replacement.of(OSProjectPhase2.REPLACEMENT, frames);
+
+        this.interrupts = new Interrupts(this, supervisor);
+        this.translation = supervisor == null ? new Translation.Paged(this) : new Translation.Direct(this, words);
+    }
+
+    // a machine without paging, every address is a real one of its words of
+    // memory, and without time or line limits, the operating system is the
+    // supervisor's, it is called on every interrupt, this is how phase 1 runs
+    public static VirtualMachine direct(int words, Supervisor supervisor) {
+        VirtualMachine vm = new VirtualMachine(words, words / Geometry.PAGE_WORDS, supervisor);
+        vm.init();
+        vm.memory.fill(0, words, Memory.BLANK);
+        vm.PTR = -1;
+        vm.pcb.TTL = Integer.MAX_VALUE;
+        return vm;
+    }
+
+    // what a supervisor sees of the machine and does to it
+    public int wordChars() {
+        return Memory.WORD_SIZE;
+    }
+
+    public long read(int address) {
+        return memory.read(address);
+    }
+
+    public void write(int address, long word) {
+        memory.write(address, word);
+        written(address, address + 1);
+    }
+
+    public long instructionRegister() {
+        return instructionRegister;
+    }
+
+    public int systemInterrupt() {
+        return SI;
+    }
+
+    public int programInterrupt() {
+        return PI;
+    }
+
+    // stop the program, the interrupt being serviced ends it
+    public void halt() {
+        terminate = true;
+    }
+
+    // runs every job found on the input cards, one after another
+    void run() throws IOException {
+        load();
+        output.flush();
+    }
+}